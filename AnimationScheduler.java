@@ -0,0 +1,181 @@
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.Timer;
+
+/**
+ * Runs UI animations on the Swing event thread from a single timer that
+ * only ticks while at least one animation is active. With nothing to
+ * animate the timer is stopped and the event thread stays idle.
+ *
+ * The frame rate is capped: the timer fires at most maxFramesPerSecond
+ * times a second, and Swing coalesces ticks that queue up behind a busy
+ * event thread. Each frame also has a time budget of one frame interval;
+ * animations that would run past it skip that frame, and the next frame
+ * starts with them so none is starved. Animations are given the time
+ * since they started rather than a frame count, so a skipped frame makes
+ * them jump ahead instead of running slow.
+ *
+ * Must only be used on the event thread.
+ */
+public class AnimationScheduler {
+
+    public static final int DEFAULT_FRAMES_PER_SECOND = 30;
+
+    /**
+     * One animation, drawn frame by frame
+     */
+    public interface Animation {
+        /**
+         * @param elapsedMillis Time since the animation was started
+         * @return false once the animation has finished
+         */
+        boolean frame(long elapsedMillis);
+    }
+
+    /**
+     * A started animation
+     */
+    public final class Handle {
+        private final Animation animation;
+        private final long startNanos;
+        private boolean running = true;
+
+        private Handle(Animation animation, long startNanos) {
+            this.animation = animation;
+            this.startNanos = startNanos;
+        }
+
+        // Stops the animation before its next frame; its last frame stays on screen
+        public void cancel() {
+            if (running) {
+                running = false;
+                active.remove(this);
+                stopIfIdle();
+            }
+        }
+
+        public boolean isRunning() {
+            return running;
+        }
+    }
+
+    private final Timer timer;
+    private final long frameBudgetNanos;
+    private final List<Handle> active = new ArrayList<>();
+    private int nextFirst; // Where the next frame starts, after skips
+
+    // Metrics
+    private long frames;
+    private long skipped;
+
+    public AnimationScheduler() {
+        this(DEFAULT_FRAMES_PER_SECOND);
+    }
+
+    /**
+     * @param maxFramesPerSecond Upper bound on frames per second
+     */
+    public AnimationScheduler(int maxFramesPerSecond) {
+        if (maxFramesPerSecond <= 0) {
+            throw new IllegalArgumentException("maxFramesPerSecond must be positive");
+        }
+        int intervalMillis = Math.max(1, 1000 / maxFramesPerSecond);
+        this.frameBudgetNanos = intervalMillis * 1_000_000L;
+        this.timer = new Timer(intervalMillis, e -> tick());
+        timer.setCoalesce(true);
+    }
+
+    /**
+     * Starts an animation; its first frame is drawn right away
+     */
+    public Handle start(Animation animation) {
+        Handle handle = new Handle(animation, System.nanoTime());
+        if (!run(handle, 0)) {
+            return handle;
+        }
+        active.add(handle);
+        if (!timer.isRunning()) {
+            timer.start();
+        }
+        return handle;
+    }
+
+    /**
+     * Stops all animations and the timer
+     */
+    public void cancelAll() {
+        for (Handle handle : new ArrayList<>(active)) {
+            handle.running = false;
+        }
+        active.clear();
+        timer.stop();
+    }
+
+    public boolean isIdle() {
+        return active.isEmpty();
+    }
+
+    private void tick() {
+        frames++;
+        long frameStart = System.nanoTime();
+        int count = active.size();
+        int first = Math.min(nextFirst, count);
+        nextFirst = 0;
+
+        // Snapshot, since animations may start or cancel others
+        List<Handle> frame = new ArrayList<>(count);
+        frame.addAll(active.subList(first, count));
+        frame.addAll(active.subList(0, first));
+        for (int i = 0; i < frame.size(); i++) {
+            Handle handle = frame.get(i);
+            if (!handle.running) {
+                continue;
+            }
+            long now = System.nanoTime();
+            if (i > 0 && now - frameStart > frameBudgetNanos) {
+                // Out of time; the rest go first next frame
+                skipped += frame.size() - i;
+                nextFirst = Math.max(0, active.indexOf(handle));
+                break;
+            }
+            if (!run(handle, (now - handle.startNanos) / 1_000_000)) {
+                active.remove(handle);
+            }
+        }
+        stopIfIdle();
+    }
+
+    // False once the animation is done (finished, cancelled or failed)
+    private boolean run(Handle handle, long elapsedMillis) {
+        try {
+            if (handle.animation.frame(elapsedMillis) && handle.running) {
+                return true;
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Animation failed: " + e);
+        }
+        handle.running = false;
+        return false;
+    }
+
+    private void stopIfIdle() {
+        if (active.isEmpty()) {
+            timer.stop();
+            nextFirst = 0;
+        }
+    }
+
+    public long getFrameCount() {
+        return frames;
+    }
+
+    // Animation frames dropped because a frame ran out of time
+    public long getSkippedCount() {
+        return skipped;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Active animations: %d | Frames: %d | Skipped: %d", active.size(), frames, skipped);
+    }
+}
@@ -0,0 +1,115 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Per-symbol circuit breaker.
+ * A symbol that fails repeatedly (delisted, misspelt, no data) is skipped
+ * for a cool-down period instead of being requested on every refresh.
+ * After the cool-down a single trial request is let through: success
+ * closes the breaker again, failure re-opens it.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static class Circuit {
+        State state = State.CLOSED;
+        int failures;
+        long openedAt;
+    }
+
+    private final int failureThreshold;
+    private final long coolDownMillis;
+    private final Map<String, Circuit> circuits = new HashMap<>();
+    private long rejected;
+
+    /**
+     * @param failureThreshold Consecutive failures that open the breaker
+     * @param coolDownMillis How long an open breaker skips the symbol
+     */
+    public CircuitBreaker(int failureThreshold, long coolDownMillis) {
+        if (failureThreshold <= 0) {
+            throw new IllegalArgumentException("failureThreshold must be positive");
+        }
+        this.failureThreshold = failureThreshold;
+        this.coolDownMillis = coolDownMillis;
+    }
+
+    /**
+     * @param symbol Stock symbol
+     * @return true if a request for the symbol may be sent now
+     */
+    public synchronized boolean allowRequest(String symbol) {
+        Circuit circuit = circuits.get(normalize(symbol));
+        if (circuit == null || circuit.state == State.CLOSED) {
+            return true;
+        }
+
+        long now = System.currentTimeMillis();
+        if (now - circuit.openedAt >= coolDownMillis) {
+            // Let one trial through; if its result never arrives another
+            // trial is allowed after the next cool-down
+            circuit.state = State.HALF_OPEN;
+            circuit.openedAt = now;
+            return true;
+        }
+        rejected++;
+        return false;
+    }
+
+    public synchronized void recordSuccess(String symbol) {
+        circuits.remove(normalize(symbol));
+    }
+
+    public synchronized void recordFailure(String symbol) {
+        Circuit circuit = circuits.computeIfAbsent(normalize(symbol), k -> new Circuit());
+        circuit.failures++;
+        if (circuit.state == State.HALF_OPEN || circuit.failures >= failureThreshold) {
+            circuit.state = State.OPEN;
+            circuit.openedAt = System.currentTimeMillis();
+        }
+    }
+
+    public synchronized State getState(String symbol) {
+        Circuit circuit = circuits.get(normalize(symbol));
+        return circuit == null ? State.CLOSED : circuit.state;
+    }
+
+    /**
+     * @return State of every symbol that has failed recently, sorted by symbol
+     */
+    public synchronized Map<String, State> getStates() {
+        Map<String, State> states = new TreeMap<>();
+        for (Map.Entry<String, Circuit> entry : circuits.entrySet()) {
+            states.put(entry.getKey(), entry.getValue().state);
+        }
+        return states;
+    }
+
+    public synchronized int getOpenCount() {
+        int open = 0;
+        for (Circuit circuit : circuits.values()) {
+            if (circuit.state != State.CLOSED) open++;
+        }
+        return open;
+    }
+
+    // Requests skipped because the breaker was open
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    public synchronized void reset() {
+        circuits.clear();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Open: %d | Tracked: %d | Skipped requests: %d", getOpenCount(), circuits.size(), rejected);
+    }
+
+    private static String normalize(String symbol) {
+        return symbol.trim().toUpperCase();
+    }
+}
@@ -0,0 +1,473 @@
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Reusable RFC 4180 tokenizer working directly on a char buffer.
+ *
+ * {@link #next} finds the fields of one record and only remembers where
+ * they are; strings are created when asked for, and {@link #getInt},
+ * {@link #getDouble} and {@link #getAmount} parse straight from the buffer.
+ * One tokenizer is meant to be reused for every record of a file.
+ *
+ * Quoting rules: a field that starts with a double quote runs to the
+ * matching closing quote and may contain delimiters, line breaks and
+ * doubled quotes ("" for a literal "). Anything between the closing quote
+ * and the next delimiter is ignored. Quotes inside an unquoted field are
+ * kept as they are. Records end at \n, \r\n or \r outside quotes.
+ *
+ * Not thread-safe; field accessors refer to the buffer passed to the last
+ * {@link #next} call and are only valid until it changes.
+ */
+public class CsvTokenizer {
+
+    // Parser states, shared with RecordScanner
+    private static final int FIELD_START = 0;
+    private static final int UNQUOTED = 1;
+    private static final int QUOTED = 2;
+    private static final int QUOTE_IN_QUOTED = 3;
+    private static final int AFTER_QUOTED = 4;
+
+    private static final char RUPEE = '₹';
+
+    // Powers of ten that are exact in a double
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final char delimiter;
+
+    private char[] buffer;
+    private int recordStart;
+    private int recordEnd; // Excluding the line terminator
+    private int lines;
+
+    // Field bounds in the buffer (inside the quotes for quoted fields)
+    private int fieldCount;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private boolean[] escaped = new boolean[16]; // Contains "" pairs
+
+    // Result of the last parseDecimal call
+    private double parsed;
+
+    public CsvTokenizer() {
+        this(',');
+    }
+
+    public CsvTokenizer(char delimiter) {
+        if (delimiter == '"' || delimiter == '\n' || delimiter == '\r') {
+            throw new IllegalArgumentException("Invalid delimiter: " + delimiter);
+        }
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Tokenizes the record starting at {@code from}
+     *
+     * @param buffer Characters to read
+     * @param from Start of the record
+     * @param limit End of the valid characters
+     * @param endOfInput true if no characters follow {@code limit}; otherwise a
+     *                   record running up to the limit is reported as incomplete
+     * @return Index just past the record and its line terminator, or -1 if the
+     *         record is incomplete and more input is needed
+     */
+    public int next(char[] buffer, int from, int limit, boolean endOfInput) {
+        this.buffer = buffer;
+        this.recordStart = from;
+        this.fieldCount = 0;
+        this.lines = 1;
+
+        int state = FIELD_START;
+        int fieldStart = from;
+        int quoteEnd = from;
+        boolean fieldEscaped = false;
+        int i = from;
+        while (i < limit) {
+            char c = buffer[i];
+            switch (state) {
+                case FIELD_START:
+                    fieldEscaped = false;
+                    if (c == '"') {
+                        state = QUOTED;
+                        fieldStart = i + 1;
+                        i++;
+                    } else {
+                        state = UNQUOTED;
+                        fieldStart = i;
+                    }
+                    break;
+                case UNQUOTED:
+                    if (c == delimiter) {
+                        addField(fieldStart, i, false);
+                        state = FIELD_START;
+                        i++;
+                    } else if (c == '\n' || c == '\r') {
+                        addField(fieldStart, i, false);
+                        return endRecord(i, limit, endOfInput);
+                    } else {
+                        i++;
+                    }
+                    break;
+                case QUOTED:
+                    if (c == '"') {
+                        state = QUOTE_IN_QUOTED;
+                        quoteEnd = i;
+                    } else if (c == '\n' || (c == '\r' && (i + 1 >= limit || buffer[i + 1] != '\n'))) {
+                        lines++;
+                    }
+                    i++;
+                    break;
+                case QUOTE_IN_QUOTED:
+                    if (c == '"') {
+                        fieldEscaped = true;
+                        state = QUOTED;
+                        i++;
+                    } else {
+                        addField(fieldStart, quoteEnd, fieldEscaped);
+                        state = AFTER_QUOTED;
+                    }
+                    break;
+                default: // AFTER_QUOTED
+                    if (c == delimiter) {
+                        state = FIELD_START;
+                        i++;
+                    } else if (c == '\n' || c == '\r') {
+                        return endRecord(i, limit, endOfInput);
+                    } else {
+                        i++;
+                    }
+                    break;
+            }
+        }
+
+        if (!endOfInput) {
+            return -1;
+        }
+        // The input ends inside the record
+        switch (state) {
+            case FIELD_START:
+                addField(limit, limit, false);
+                break;
+            case UNQUOTED:
+                addField(fieldStart, limit, false);
+                break;
+            case QUOTED: // Unterminated quote: take the rest of the input
+                addField(fieldStart, limit, fieldEscaped);
+                break;
+            case QUOTE_IN_QUOTED:
+                addField(fieldStart, quoteEnd, fieldEscaped);
+                break;
+            default:
+                break;
+        }
+        recordEnd = limit;
+        return limit;
+    }
+
+    private int endRecord(int terminator, int limit, boolean endOfInput) {
+        recordEnd = terminator;
+        if (buffer[terminator] == '\n') {
+            return terminator + 1;
+        }
+        if (terminator + 1 < limit) {
+            return buffer[terminator + 1] == '\n' ? terminator + 2 : terminator + 1;
+        }
+        // A \r at the end of the input; a \n may still follow it
+        return endOfInput ? terminator + 1 : -1;
+    }
+
+    private void addField(int start, int end, boolean fieldEscaped) {
+        if (fieldCount == starts.length) {
+            starts = Arrays.copyOf(starts, fieldCount * 2);
+            ends = Arrays.copyOf(ends, fieldCount * 2);
+            escaped = Arrays.copyOf(escaped, fieldCount * 2);
+        }
+        starts[fieldCount] = start;
+        ends[fieldCount] = end;
+        escaped[fieldCount] = fieldEscaped;
+        fieldCount++;
+    }
+
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    // Physical lines the last record spans (more than 1 if a quoted field holds line breaks)
+    public int getLineCount() {
+        return lines;
+    }
+
+    /**
+     * @return Text of the last record without its line terminator
+     */
+    public String getRecord() {
+        return new String(buffer, recordStart, recordEnd - recordStart);
+    }
+
+    /**
+     * @param field Field index
+     * @return Field value with quotes removed, not trimmed
+     */
+    public String getString(int field) {
+        Objects.checkIndex(field, fieldCount);
+        int start = starts[field];
+        int end = ends[field];
+        if (!escaped[field]) {
+            return new String(buffer, start, end - start);
+        }
+        StringBuilder value = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            value.append(buffer[i]);
+            if (buffer[i] == '"' && i + 1 < end && buffer[i + 1] == '"') {
+                i++;
+            }
+        }
+        return value.toString();
+    }
+
+    /**
+     * @return Field value with quotes removed and trimmed like {@link String#trim}
+     */
+    public String getTrimmed(int field) {
+        Objects.checkIndex(field, fieldCount);
+        if (escaped[field]) {
+            return getString(field).trim();
+        }
+        int start = trimStart(field);
+        return new String(buffer, start, trimEnd(field, start) - start);
+    }
+
+    /**
+     * Parses a field like {@code Integer.parseInt(getString(field).trim())},
+     * without creating a string unless the field is invalid
+     *
+     * @throws NumberFormatException if the field is not an int
+     */
+    public int getInt(int field) {
+        Objects.checkIndex(field, fieldCount);
+        int start = trimStart(field);
+        int end = trimEnd(field, start);
+        if (!escaped[field] && start < end) {
+            int i = start;
+            boolean negative = buffer[i] == '-';
+            if (negative || buffer[i] == '+') {
+                i++;
+            }
+            // Accumulate negatively, like Integer.parseInt, so MIN_VALUE fits
+            int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+            int value = 0;
+            boolean valid = i < end;
+            for (; valid && i < end; i++) {
+                int digit = buffer[i] - '0';
+                if (digit < 0 || digit > 9 || value < limit / 10 || value * 10 < limit + digit) {
+                    valid = false;
+                } else {
+                    value = value * 10 - digit;
+                }
+            }
+            if (valid) {
+                return negative ? value : -value;
+            }
+        }
+        // Let Integer.parseInt produce the usual exception
+        return Integer.parseInt(getTrimmed(field));
+    }
+
+    /**
+     * Parses a field like {@code Double.parseDouble(getString(field).trim())}.
+     * Plain decimal numbers are converted exactly without creating a string.
+     *
+     * @throws NumberFormatException if the field is not a number
+     */
+    public double getDouble(int field) {
+        Objects.checkIndex(field, fieldCount);
+        int start = trimStart(field);
+        if (!escaped[field] && parseDecimal(start, trimEnd(field, start), false)) {
+            return parsed;
+        }
+        return Double.parseDouble(getTrimmed(field));
+    }
+
+    /**
+     * Parses a currency amount such as {@code ₹1,234.50}: rupee signs and
+     * thousands separators are ignored. Same result as
+     * {@code Double.parseDouble(value.trim().replace("₹", "").replace(",", ""))}.
+     *
+     * @throws NumberFormatException if the field is not an amount
+     */
+    public double getAmount(int field) {
+        Objects.checkIndex(field, fieldCount);
+        int start = trimStart(field);
+        if (!escaped[field] && parseDecimal(start, trimEnd(field, start), true)) {
+            return parsed;
+        }
+        return Double.parseDouble(getTrimmed(field).replace(String.valueOf(RUPEE), "").replace(",", ""));
+    }
+
+    private int trimStart(int field) {
+        int start = starts[field];
+        while (start < ends[field] && buffer[start] <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private int trimEnd(int field, int start) {
+        int end = ends[field];
+        while (end > start && buffer[end - 1] <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Fast path for [sign] digits [. digits] [e [sign] digits]. The result is
+     * exact (as Double.parseDouble would round it) when the significant
+     * digits fit in 2^53 and the power of ten is at most 22; anything else
+     * is left to the caller's Double.parseDouble fallback.
+     *
+     * @return true if the value was parsed into {@link #parsed}
+     */
+    private boolean parseDecimal(int start, int end, boolean amount) {
+        int i = start;
+        // Leading currency signs and separators
+        while (amount && i < end && (buffer[i] == RUPEE || buffer[i] == ',')) {
+            i++;
+        }
+        boolean negative = false;
+        if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+            negative = buffer[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;       // Significant digits in the mantissa
+        int exponent = 0;     // Decimal exponent adjustment
+        boolean sawDigit = false;
+        boolean sawPoint = false;
+        for (; i < end; i++) {
+            char c = buffer[i];
+            if (c >= '0' && c <= '9') {
+                sawDigit = true;
+                if (mantissa == 0 && c == '0') {
+                    if (sawPoint) {
+                        exponent--;
+                    }
+                    continue; // Leading zero
+                }
+                if (digits == 18) {
+                    return false; // Could overflow a long
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (sawPoint) {
+                    exponent--;
+                }
+            } else if (c == '.' && !sawPoint) {
+                sawPoint = true;
+            } else if (amount && (c == RUPEE || c == ',')) {
+                continue;
+            } else {
+                break;
+            }
+        }
+        if (!sawDigit) {
+            return false;
+        }
+
+        if (i < end && (buffer[i] == 'e' || buffer[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+                negativeExponent = buffer[i] == '-';
+                i++;
+            }
+            int explicit = 0;
+            int exponentDigits = 0;
+            for (; i < end && buffer[i] >= '0' && buffer[i] <= '9'; i++) {
+                if (++exponentDigits > 4) {
+                    return false;
+                }
+                explicit = explicit * 10 + (buffer[i] - '0');
+            }
+            if (exponentDigits == 0) {
+                return false;
+            }
+            exponent += negativeExponent ? -explicit : explicit;
+        }
+        while (amount && i < end && (buffer[i] == RUPEE || buffer[i] == ',')) {
+            i++;
+        }
+        if (i != end) {
+            return false; // Suffixes, hex, NaN, embedded spaces... left to Double.parseDouble
+        }
+
+        double value;
+        if (mantissa == 0) {
+            value = 0;
+        } else if (mantissa < (1L << 53) && exponent >= -22 && exponent <= 22) {
+            value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+        } else {
+            return false;
+        }
+        parsed = negative ? -value : value;
+        return true;
+    }
+
+    /**
+     * Byte-level twin of {@link #next} for ASCII-compatible encodings. Fed a
+     * file's bytes in order, it tells where a '\n' ends a record (and is not
+     * inside a quoted field), so the file can be cut into chunks that
+     * tokenize exactly as the whole file would.
+     */
+    static final class RecordScanner {
+        private final byte delimiter;
+        private int state = FIELD_START;
+
+        RecordScanner(char delimiter) {
+            this.delimiter = (byte) delimiter;
+        }
+
+        /**
+         * @return true if a new record starts right after this byte
+         */
+        boolean feed(byte b) {
+            switch (state) {
+                case QUOTED:
+                    if (b == '"') {
+                        state = QUOTE_IN_QUOTED;
+                    }
+                    return false;
+                case QUOTE_IN_QUOTED:
+                    if (b == '"') {
+                        state = QUOTED;
+                        return false;
+                    }
+                    break;
+                case FIELD_START:
+                    if (b == '"') {
+                        state = QUOTED;
+                        return false;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            // Outside quotes
+            if (b == '\n') {
+                state = FIELD_START;
+                return true;
+            }
+            if (b == '\r' || b == delimiter) {
+                state = FIELD_START;
+            } else if (state == FIELD_START) {
+                state = UNQUOTED;
+            } else if (state == QUOTE_IN_QUOTED) {
+                state = AFTER_QUOTED;
+            }
+            return false;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class GamifiedPortfolio extends Portfolio implements Serializable {
@@ -38,15 +40,48 @@ public class GamifiedPortfolio extends Portfolio implements Serializable {
         addExperience(10);
         
         // Update stats
-        stats.put("totalTrades", stats.get("totalTrades") + 1);
+        putStat("totalTrades", stats.get("totalTrades") + 1);
         
         // Check for achievements
         checkAchievements();
     }
     
+    /**
+     * Adds several stocks with the same outcome as calling addStock for each
+     * in turn - same positions, level, XP, stats and achievements in the same
+     * order - but awards the XP and updates the trade count once per batch.
+     * Achievements are still checked after every stock, since a later stock
+     * can take the total profit back under a threshold; the totals are
+     * running sums, so each check is cheap.
+     */
+    @Override
+    public void addStocks(Collection<? extends Stock> stocks) {
+        if (stocks.isEmpty()) {
+            return;
+        }
+        List<String> earned = new ArrayList<>();
+        for (Stock stock : stocks) {
+            super.addStock(stock);
+            collectAchievements(earned);
+        }
+        
+        int exp = 10 * stocks.size();
+        for (String achievement : earned) {
+            unlock(achievement);
+            exp += achievementExperience(achievement);
+        }
+        addExperience(exp);
+        putStat("totalTrades", stats.get("totalTrades") + stocks.size());
+    }
+    
     // Level system
     public void addExperience(int exp) {
         experience += exp;
+        markModified();
+        PortfolioJournal journal = getJournal();
+        if (journal != null) {
+            journal.recordExperience(exp);
+        }
         
         // Level up logic
         int expNeeded = getExpForNextLevel();
@@ -55,6 +90,7 @@ public class GamifiedPortfolio extends Portfolio implements Serializable {
             experience -= expNeeded;
             expNeeded = getExpForNextLevel();
         }
+        post(PortfolioEvents.Type.EXPERIENCE_CHANGED, null);
     }
     
     public int getExpForNextLevel() {
@@ -80,7 +116,20 @@ public class GamifiedPortfolio extends Portfolio implements Serializable {
     
     // Daily profit/loss
     public void updateDailyProfitLoss() {
-        dailyProfitLoss = getTotalProfit();
+        setDailyProfitLoss(getTotalProfit());
+    }
+    
+    // Called on every screen update, so only actual changes are journaled
+    void setDailyProfitLoss(double dailyProfitLoss) {
+        if (Double.compare(dailyProfitLoss, this.dailyProfitLoss) == 0) {
+            return;
+        }
+        this.dailyProfitLoss = dailyProfitLoss;
+        markModified();
+        PortfolioJournal journal = getJournal();
+        if (journal != null) {
+            journal.recordDailyProfitLoss(dailyProfitLoss);
+        }
     }
     
     public double getDailyProfitLoss() {
@@ -89,42 +138,108 @@ public class GamifiedPortfolio extends Portfolio implements Serializable {
     
     // Achievements
     public void checkAchievements() {
+        List<String> earned = new ArrayList<>();
+        collectAchievements(earned);
+        for (String achievement : earned) {
+            unlock(achievement);
+            int exp = achievementExperience(achievement);
+            if (exp > 0) {
+                addExperience(exp);
+            }
+        }
+    }
+    
+    // Appends the achievements the portfolio qualifies for now and has not earned yet
+    private void collectAchievements(List<String> earned) {
         // First Stock Achievement
-        if (getStockCount() == 1 && !achievements.contains("First Stock")) {
-            achievements.add("First Stock");
+        if (getStockCount() == 1) {
+            earn("First Stock", earned);
         }
         
         // Portfolio Builder
-        if (getStockCount() >= 5 && !achievements.contains("Portfolio Builder")) {
-            achievements.add("Portfolio Builder");
-            addExperience(50);
+        if (getStockCount() >= 5) {
+            earn("Portfolio Builder", earned);
         }
         
         // Diversified Investor
-        if (getStockCount() >= 10 && !achievements.contains("Diversified Investor")) {
-            achievements.add("Diversified Investor");
-            addExperience(100);
+        if (getStockCount() >= 10) {
+            earn("Diversified Investor", earned);
         }
         
         // Profit Maker
-        if (getTotalProfit() > 0 && !achievements.contains("Profit Maker")) {
-            achievements.add("Profit Maker");
-            addExperience(30);
+        if (getTotalProfit() > 0) {
+            earn("Profit Maker", earned);
         }
         
         // Big Winner
-        if (getTotalProfit() >= 10000 && !achievements.contains("Big Winner")) {
-            achievements.add("Big Winner");
-            addExperience(200);
+        if (getTotalProfit() >= 10000) {
+            earn("Big Winner", earned);
         }
         
         // Millionaire Portfolio
-        if (getTotalValue() >= 1000000 && !achievements.contains("Millionaire")) {
-            achievements.add("Millionaire");
-            addExperience(500);
+        if (getTotalValue() >= 1000000) {
+            earn("Millionaire", earned);
         }
     }
     
+    private void earn(String achievement, List<String> earned) {
+        if (!achievements.contains(achievement) && !earned.contains(achievement)) {
+            earned.add(achievement);
+        }
+    }
+    
+    // XP awarded when an achievement is unlocked
+    private static int achievementExperience(String achievement) {
+        switch (achievement) {
+            case "Portfolio Builder": return 50;
+            case "Diversified Investor": return 100;
+            case "Profit Maker": return 30;
+            case "Big Winner": return 200;
+            case "Millionaire": return 500;
+            default: return 0;
+        }
+    }
+    
+    void unlock(String achievement) {
+        if (achievements.contains(achievement)) {
+            return;
+        }
+        achievements.add(achievement);
+        markModified();
+        PortfolioJournal journal = getJournal();
+        if (journal != null) {
+            journal.recordAchievement(achievement);
+        }
+        post(PortfolioEvents.Type.ACHIEVEMENT_UNLOCKED, achievement);
+    }
+    
+    void putStat(String key, int value) {
+        stats.put(key, value);
+        markModified();
+        PortfolioJournal journal = getJournal();
+        if (journal != null) {
+            journal.recordStat(key, value);
+        }
+        post(PortfolioEvents.Type.STATS_CHANGED, key);
+    }
+    
+    private void post(PortfolioEvents.Type type, String subject) {
+        PortfolioEvents events = getEvents();
+        if (events != null) {
+            events.post(type, subject);
+        }
+    }
+    
+    // Used by PortfolioFile when loading a saved portfolio
+    void restoreProgress(int level, int experience, double dailyProfitLoss,
+                         List<String> achievements, Map<String, Integer> stats) {
+        this.level = level;
+        this.experience = experience;
+        this.dailyProfitLoss = dailyProfitLoss;
+        this.achievements = new ArrayList<>(achievements);
+        this.stats.putAll(stats);
+    }
+    
     public ArrayList<String> getAchievements() {
         return new ArrayList<>(achievements);
     }
@@ -136,9 +251,9 @@ public class GamifiedPortfolio extends Portfolio implements Serializable {
     // Stats
     public void updateStats(boolean isWinning) {
         if (isWinning) {
-            stats.put("winningTrades", stats.get("winningTrades") + 1);
+            putStat("winningTrades", stats.get("winningTrades") + 1);
         } else {
-            stats.put("losingTrades", stats.get("losingTrades") + 1);
+            putStat("losingTrades", stats.get("losingTrades") + 1);
         }
     }
     
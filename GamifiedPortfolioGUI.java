@@ -1,21 +1,22 @@
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.table.DefaultTableCellRenderer;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.HashSet;
-import org.jfree.chart.ChartFactory;
-import org.jfree.chart.ChartPanel;
-import org.jfree.chart.JFreeChart;
-import org.jfree.data.general.DefaultPieDataset;
 
 public class GamifiedPortfolioGUI extends JFrame {
     private GamifiedPortfolio portfolio;
+    private PortfolioJournal journal; // Null if the save files could not be opened
+    private SaveService saveService;
+    private PortfolioEvents events;
     private JTable stockTable;
-    private DefaultTableModel tableModel;
+    private PortfolioTableModel tableModel;
     private JLabel levelLabel;
     private JProgressBar expBar;
     private JProgressBar healthBar;
@@ -23,12 +24,19 @@ public class GamifiedPortfolioGUI extends JFrame {
     private JLabel dailyProfitLabel;
     private JLabel achievementCountLabel;
     private JPanel achievementPanel;
+    private final Map<String, JLabel> achievementLabels = new LinkedHashMap<>();
+    private JPanel quickStatsPanel;
     private JLabel statusLabel;
     private JCheckBox autoRefreshCheckBox;
     private Timer autoRefreshTimer;
     private JCheckBox autoSaveCheckBox;
     private Timer autoSaveTimer;
     private final String SAVE_FILE = "portfolio.dat";
+    private final PriceRefresher priceRefresher = new PriceRefresher();
+    private boolean refreshing; // A price refresh is running
+    private final AnimationScheduler animations = new AnimationScheduler();
+    private AnimationScheduler.Handle profitPulse;
+    private PortfolioCharts charts; // Created when a chart is first opened
     
     // AMOLED black theme palette
     private final Color PRIMARY_COLOR = new Color(14, 165, 233); // Cyan accent
@@ -45,17 +53,33 @@ public class GamifiedPortfolioGUI extends JFrame {
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLocationRelativeTo(null);
         
-        // Try to load existing portfolio
+        // Load the last snapshot plus the changes journaled since
         try {
-            Portfolio loaded = Portfolio.loadFromFile(SAVE_FILE);
-            if (loaded instanceof GamifiedPortfolio) {
-                portfolio = (GamifiedPortfolio) loaded;
-            } else {
-                portfolio = new GamifiedPortfolio("My Portfolio");
-            }
+            journal = PortfolioJournal.open(java.nio.file.Paths.get(SAVE_FILE), new GamifiedPortfolio("My Portfolio"));
         } catch (Exception e) {
-            portfolio = new GamifiedPortfolio("My Portfolio");
+            setAsideUnreadableSave(e);
+            try {
+                journal = PortfolioJournal.open(java.nio.file.Paths.get(SAVE_FILE), new GamifiedPortfolio("My Portfolio"));
+            } catch (Exception again) {
+                journal = null; // Saving falls back to full snapshots
+            }
         }
+        portfolio = journal != null ? (GamifiedPortfolio) journal.getPortfolio() : new GamifiedPortfolio("My Portfolio");
+        saveService = new SaveService(portfolio, journal, java.nio.file.Paths.get(SAVE_FILE));
+        saveService.setListener(new SaveService.Listener() {
+            @Override
+            public void saveCompleted() {
+                SwingUtilities.invokeLater(() -> showAutoSaved());
+            }
+            
+            @Override
+            public void saveFailed(java.io.IOException e) {
+                SwingUtilities.invokeLater(() -> {
+                    statusLabel.setText("Save failed: " + e.getMessage());
+                    statusLabel.setForeground(DANGER_COLOR);
+                });
+            }
+        });
         
         // Set modern look
         try {
@@ -65,17 +89,31 @@ public class GamifiedPortfolioGUI extends JFrame {
         }
         
         initComponents();
-        updateAll();
         
-        // Start animation timer
-        Timer animationTimer = new Timer(50, e -> updateAnimations());
-        animationTimer.start();
+        // Fill every widget once; from here on each is updated only by the
+        // kinds of change it shows, delivered as coalesced batches
+        updatePositionWidgets();
+        updateLevelWidgets();
+        updateStatsWidgets();
+        updateAchievementWidgets();
+        events = new PortfolioEvents(portfolio, SwingUtilities::invokeLater);
+        events.addListener(batch -> updatePositionWidgets(), PortfolioEvents.POSITIONS);
+        events.addListener(batch -> updateLevelWidgets(), EnumSet.of(PortfolioEvents.Type.EXPERIENCE_CHANGED));
+        events.addListener(batch -> updateStatsWidgets(), EnumSet.of(PortfolioEvents.Type.STATS_CHANGED));
+        events.addListener(batch -> updateAchievementWidgets(), EnumSet.of(PortfolioEvents.Type.ACHIEVEMENT_UNLOCKED));
         
         // Auto-save on window close
         addWindowListener(new WindowAdapter() {
             @Override
             public void windowClosing(WindowEvent e) {
-                autoSave();
+                try {
+                    saveService.close(); // Writes anything not saved yet
+                    if (journal != null) {
+                        journal.close();
+                    }
+                } catch (java.io.IOException ex) {
+                    System.err.println("Error saving portfolio on exit: " + ex.getMessage());
+                }
                 if (autoSaveTimer != null) {
                     autoSaveTimer.stop();
                     autoSaveTimer = null;
@@ -84,6 +122,10 @@ public class GamifiedPortfolioGUI extends JFrame {
                     autoRefreshTimer.stop();
                     autoRefreshTimer = null;
                 }
+                animations.cancelAll();
+                if (charts != null) {
+                    charts.close();
+                }
             }
         });
     }
@@ -232,15 +274,12 @@ public class GamifiedPortfolioGUI extends JFrame {
         titleLabel.setBorder(BorderFactory.createEmptyBorder(0, 0, 10, 0));
         panel.add(titleLabel, BorderLayout.NORTH);
         
-        String[] columns = {"Symbol", "Name", "Qty", "Buy Price", "Current", "Value", "Profit", "P/L %"};
-        tableModel = new DefaultTableModel(columns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        // The model holds raw numbers; the renderer below formats them and
+        // clicking a header sorts numerically
+        tableModel = new PortfolioTableModel(portfolio);
         
         stockTable = new JTable(tableModel);
+        stockTable.setAutoCreateRowSorter(true);
         stockTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         stockTable.setRowHeight(30);
         stockTable.setFont(new Font("Arial", Font.PLAIN, 12));
@@ -271,17 +310,18 @@ public class GamifiedPortfolioGUI extends JFrame {
         
         stockTable.setFillsViewportHeight(true);
         
-        // Custom cell renderer for colorful profit/loss
-        stockTable.setDefaultRenderer(Object.class, new DefaultTableCellRenderer() {
+        // Custom cell renderer for formatting and colorful profit/loss
+        DefaultTableCellRenderer cellRenderer = new DefaultTableCellRenderer() {
             @Override
             public Component getTableCellRendererComponent(JTable table, Object value,
                     boolean isSelected, boolean hasFocus, int row, int column) {
-                Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+                int modelColumn = table.convertColumnIndexToModel(column);
+                Component c = super.getTableCellRendererComponent(table, format(value, modelColumn), isSelected, hasFocus, row, column);
                 
                 if (!isSelected) {
                     c.setBackground(CARD_BG);
                     // Specific column colors
-                    if (column == 2 || column == 3) { // Qty and Buy Price columns
+                    if (modelColumn == PortfolioTableModel.QUANTITY || modelColumn == PortfolioTableModel.BUY_PRICE) {
                         // Use readable color based on background brightness
                         double lum = 0.299 * CARD_BG.getRed() + 0.587 * CARD_BG.getGreen() + 0.114 * CARD_BG.getBlue();
                         if (lum < 140) {
@@ -289,9 +329,8 @@ public class GamifiedPortfolioGUI extends JFrame {
                         } else {
                             c.setForeground(Color.BLACK);
                         }
-                    } else if (column == 6 || column == 7) { // Profit columns
-                        String val = value.toString();
-                        if (val.contains("-")) {
+                    } else if (modelColumn == PortfolioTableModel.PROFIT || modelColumn == PortfolioTableModel.PROFIT_PERCENT) {
+                        if (((Number) value).doubleValue() < 0) {
                             c.setForeground(DANGER_COLOR);
                         } else {
                             c.setForeground(SUCCESS_COLOR);
@@ -310,7 +349,25 @@ public class GamifiedPortfolioGUI extends JFrame {
                 
                 return c;
             }
-        });
+            
+            // Only visible cells get here, so only they are formatted
+            private Object format(Object value, int column) {
+                switch (column) {
+                    case PortfolioTableModel.BUY_PRICE:
+                    case PortfolioTableModel.CURRENT_PRICE:
+                    case PortfolioTableModel.VALUE:
+                    case PortfolioTableModel.PROFIT:
+                        return String.format("₹%.2f", (Double) value);
+                    case PortfolioTableModel.PROFIT_PERCENT:
+                        return String.format("%.2f%%", (Double) value);
+                    default:
+                        return value;
+                }
+            }
+        };
+        stockTable.setDefaultRenderer(Object.class, cellRenderer);
+        stockTable.setDefaultRenderer(Integer.class, cellRenderer);
+        stockTable.setDefaultRenderer(Double.class, cellRenderer);
         
         JScrollPane scrollPane = new JScrollPane(stockTable);
         scrollPane.getViewport().setBackground(CARD_BG);
@@ -340,11 +397,23 @@ public class GamifiedPortfolioGUI extends JFrame {
         achievementPanel.add(achTitle);
         achievementPanel.add(Box.createVerticalStrut(15));
         
+        String[] allAchievements = {"First Stock", "Portfolio Builder", "Diversified Investor", 
+                                    "Profit Maker", "Big Winner", "Millionaire"};
+        for (String ach : allAchievements) {
+            JLabel achLabel = new JLabel("[ ] " + ach);
+            achLabel.setFont(new Font("Arial", Font.PLAIN, 14));
+            achLabel.setForeground(Color.GRAY);
+            achLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
+            achievementLabels.put(ach, achLabel);
+            achievementPanel.add(achLabel);
+            achievementPanel.add(Box.createVerticalStrut(8));
+        }
+        
         panel.add(achievementPanel);
         panel.add(Box.createVerticalStrut(15));
         
         // Quick stats panel
-        JPanel quickStatsPanel = createQuickStatsPanel();
+        quickStatsPanel = createQuickStatsPanel();
         panel.add(quickStatsPanel);
         
         return panel;
@@ -680,14 +749,14 @@ public class GamifiedPortfolioGUI extends JFrame {
         String filePath = fileChooser.getSelectedFile().getAbsolutePath();
         
         try {
-            ArrayList<Stock> importedStocks = null;
+            PortfolioImporter.RowMapper format = null;
             
             if (choice == 0) {
                 // Zerodha format
-                importedStocks = PortfolioImporter.importFromZerodha(filePath);
+                format = PortfolioImporter.ZERODHA;
             } else if (choice == 1) {
                 // Groww format
-                importedStocks = PortfolioImporter.importFromGroww(filePath);
+                format = PortfolioImporter.GROWW;
             } else if (choice == 2) {
                 // Generic CSV - ask for column mapping
                 String mapping = JOptionPane.showInputDialog(this,
@@ -711,34 +780,32 @@ public class GamifiedPortfolioGUI extends JFrame {
                 int buyCol = Integer.parseInt(cols[3].trim());
                 int currentCol = Integer.parseInt(cols[4].trim());
                 
-                importedStocks = PortfolioImporter.importFromGenericCSV(filePath, symbolCol, nameCol, qtyCol, buyCol, currentCol);
+                format = PortfolioImporter.generic(symbolCol, nameCol, qtyCol, buyCol, currentCol);
             }
             
-            if (importedStocks == null || importedStocks.isEmpty()) {
-                JOptionPane.showMessageDialog(this, "No stocks found in CSV file!", "Warning", JOptionPane.WARNING_MESSAGE);
-                return;
-            }
-            
-            // Add imported stocks to portfolio
+            // Large exports are parsed in parallel; the rows are then added as one batch
             int oldLevel = portfolio.getLevel();
-            for (Stock stock : importedStocks) {
-                portfolio.addStock(stock);
+            ArrayList<Stock> stocks = new ArrayList<>();
+            PortfolioImporter.ImportResult imported = new ParallelImporter().importTo(
+                    java.nio.file.Paths.get(filePath), format, stocks::add);
+            
+            if (imported.getImported() == 0) {
+                JOptionPane.showMessageDialog(this, "No stocks found in CSV file!" + describeImportErrors(imported),
+                        "Warning", JOptionPane.WARNING_MESSAGE);
+                return;
             }
+            portfolio.addStocks(stocks);
             
             autoSave();
-            updateAll();
             
             // Check if leveled up
             if (portfolio.getLevel() > oldLevel) {
                 showLevelUpAnimation(oldLevel, portfolio.getLevel());
             }
             
-            // Show achievement notification
-            showAchievementNotification();
-            
             JOptionPane.showMessageDialog(this,
                 String.format("Successfully imported %d stocks!\n\n+%d XP Earned!\n\nDon't forget to save your portfolio!",
-                    importedStocks.size(), importedStocks.size() * 10),
+                    imported.getImported(), imported.getImported() * 10) + describeImportErrors(imported),
                 "Import Successful", JOptionPane.INFORMATION_MESSAGE);
             
         } catch (Exception e) {
@@ -749,6 +816,23 @@ public class GamifiedPortfolioGUI extends JFrame {
         }
     }
     
+    // Lists the first few rows that could not be imported
+    private String describeImportErrors(PortfolioImporter.ImportResult imported) {
+        if (imported.getErrorCount() == 0) {
+            return "";
+        }
+        StringBuilder text = new StringBuilder(String.format("\n\n%d invalid rows were skipped:", imported.getErrorCount()));
+        int shown = 0;
+        for (PortfolioImporter.ImportError error : imported.getErrors()) {
+            if (shown++ == 5) {
+                text.append("\n...");
+                break;
+            }
+            text.append("\n• Line ").append(error.getLineNumber()).append(": ").append(error.getMessage());
+        }
+        return text.toString();
+    }
+    
     private void addStock() {
         // Use same logic as before
         String symbol = JOptionPane.showInputDialog(this, 
@@ -836,16 +920,12 @@ public class GamifiedPortfolioGUI extends JFrame {
         int oldLevel = portfolio.getLevel();
         portfolio.addStock(stock);
         autoSave();
-        updateAll();
         
         // Check if leveled up
         if (portfolio.getLevel() > oldLevel) {
             showLevelUpAnimation(oldLevel, portfolio.getLevel());
         }
         
-        // Check for new achievements
-        showAchievementNotification();
-        
         String profitInfo = "";
         if (buyPrice < currentPrice) {
             profitInfo = String.format("\n\nProfit: ₹%.2f (%.2f%%)", stock.getProfit(), stock.getProfitPercentage());
@@ -870,14 +950,13 @@ public class GamifiedPortfolioGUI extends JFrame {
             return;
         }
         
-        String symbol = (String) tableModel.getValueAt(selectedRow, 0);
+        String symbol = tableModel.getSymbolAt(stockTable.convertRowIndexToModel(selectedRow));
         int confirm = JOptionPane.showConfirmDialog(this, "Are you sure you want to remove " + symbol + "?", 
                 "Confirm Remove", JOptionPane.YES_NO_OPTION);
         
         if (confirm == JOptionPane.YES_OPTION) {
             portfolio.removeStock(symbol);
             autoSave();
-            updateAll();
             JOptionPane.showMessageDialog(this, "Stock removed successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
         }
     }
@@ -905,34 +984,37 @@ public class GamifiedPortfolioGUI extends JFrame {
             return;
         }
         
-        DefaultPieDataset dataset = new DefaultPieDataset();
-        for (Stock stock : portfolio.getStocks()) {
-            dataset.setValue(stock.getSymbol(), stock.getTotalValue());
+        charts().showPieChart(this);
+    }
+    
+    // Moves unreadable save files (snapshot and journal) out of the way so the next auto-save cannot overwrite them
+    private void setAsideUnreadableSave(Exception cause) {
+        java.nio.file.Path file = java.nio.file.Paths.get(SAVE_FILE);
+        java.nio.file.Path journalFile = PortfolioJournal.journalFileFor(file);
+        String suffix = ".unreadable-" + System.currentTimeMillis();
+        java.nio.file.Path aside = file.resolveSibling(SAVE_FILE + suffix);
+        String where;
+        try {
+            if (java.nio.file.Files.exists(file)) {
+                java.nio.file.Files.move(file, aside);
+            }
+            if (java.nio.file.Files.exists(journalFile)) {
+                java.nio.file.Files.move(journalFile, journalFile.resolveSibling(journalFile.getFileName() + suffix));
+            }
+            where = "It was kept as " + aside.getFileName() + ".";
+        } catch (java.io.IOException e) {
+            where = "It could not be moved aside: " + e.getMessage();
         }
-        
-        JFreeChart chart = ChartFactory.createPieChart(
-            "Portfolio Distribution by Value",
-            dataset,
-            true, true, false
-        );
-        
-        ChartPanel chartPanel = new ChartPanel(chart);
-        chartPanel.setPreferredSize(new Dimension(600, 400));
-        
-        JFrame chartFrame = new JFrame("Portfolio Pie Chart");
-        chartFrame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
-        chartFrame.add(chartPanel);
-        chartFrame.pack();
-        chartFrame.setLocationRelativeTo(this);
-        chartFrame.setVisible(true);
+        JOptionPane.showMessageDialog(null,
+            "Your saved portfolio could not be loaded:\n" + cause.getMessage() + "\n\n" + where + "\nStarting with an empty portfolio.",
+            "Load Error", JOptionPane.WARNING_MESSAGE);
     }
     
     private void savePortfolio() {
         try {
-            portfolio.saveToFile(SAVE_FILE);
+            saveService.saveNow();
             JOptionPane.showMessageDialog(this, "Portfolio saved successfully!\n\n+5 XP Earned!", "Success", JOptionPane.INFORMATION_MESSAGE);
             portfolio.addExperience(5);
-            updateAll();
         } catch (Exception e) {
             JOptionPane.showMessageDialog(this, "Error saving portfolio: " + e.getMessage(), 
                     "Error", JOptionPane.ERROR_MESSAGE);
@@ -973,153 +1055,111 @@ public class GamifiedPortfolioGUI extends JFrame {
         
         dialog.add(panel);
         
-        Timer timer = new Timer(2000, e -> dialog.dispose());
-        timer.setRepeats(false);
-        timer.start();
+        // Pulse the new level between yellow and white, then close
+        animations.start(elapsed -> {
+            if (elapsed >= 2000) {
+                dialog.dispose();
+                return false;
+            }
+            float phase = (float) (0.5 + 0.5 * Math.sin(elapsed / 150.0));
+            levelInfo.setForeground(blend(Color.YELLOW, Color.WHITE, phase));
+            return true;
+        });
         
         dialog.setVisible(true);
     }
     
-    private void showAchievementNotification() {
-        // Check for newly unlocked achievements
-        ArrayList<String> achievements = portfolio.getAchievements();
-        if (!achievements.isEmpty()) {
-            updateAchievementPanel();
-        }
-    }
-    
-    private void updateAchievementPanel() {
-        // Clear existing achievements
-        achievementPanel.removeAll();
+    // Positions were added, removed, revalued or reordered
+    private void updatePositionWidgets() {
+        // Unlocks and XP awarded here arrive as a later batch
+        portfolio.checkAchievements();
+        portfolio.updateDailyProfitLoss();
         
-        JLabel title = new JLabel("Achievements");
-        title.setFont(new Font("Arial", Font.BOLD, 18));
-        title.setForeground(WARNING_COLOR);
-        title.setAlignmentX(Component.LEFT_ALIGNMENT);
-        achievementPanel.add(title);
-        achievementPanel.add(Box.createVerticalStrut(15));
+        // Only rows that changed are repainted; see PortfolioTableModel
+        tableModel.refresh();
         
-        ArrayList<String> achievements = portfolio.getAchievements();
-        String[] allAchievements = {"First Stock", "Portfolio Builder", "Diversified Investor", 
-                                    "Profit Maker", "Big Winner", "Millionaire"};
+        int health = portfolio.getPortfolioHealthScore();
+        healthBar.setValue(health);
+        healthBar.setString(health + "% Healthy");
         
-        for (String ach : allAchievements) {
-            JLabel achLabel = new JLabel(achievements.contains(ach) ? "[x] " + ach : "[ ] " + ach);
-            achLabel.setFont(new Font("Arial", Font.PLAIN, 14));
-            achLabel.setForeground(achievements.contains(ach) ? SUCCESS_COLOR : Color.GRAY);
-            achLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
-            achievementPanel.add(achLabel);
-            achievementPanel.add(Box.createVerticalStrut(8));
+        double dailyProfit = portfolio.getDailyProfitLoss();
+        String dailyProfitText = String.format("Daily P/L: ₹%.2f", dailyProfit);
+        if (!dailyProfitText.equals(dailyProfitLabel.getText())) {
+            dailyProfitLabel.setText(dailyProfitText);
+            pulseProfit(dailyProfit >= 0 ? SUCCESS_COLOR : DANGER_COLOR);
         }
         
-        achievementPanel.revalidate();
-        achievementPanel.repaint();
-    }
-    
-    private void updateTable() {
-        tableModel.setRowCount(0);
-        for (Stock stock : portfolio.getStocks()) {
-            Object[] row = {
-                stock.getSymbol(),
-                stock.getName(),
-                stock.getQuantity(),
-                String.format("₹%.2f", stock.getBuyPrice()),
-                String.format("₹%.2f", stock.getCurrentPrice()),
-                String.format("₹%.2f", stock.getTotalValue()),
-                String.format("₹%.2f", stock.getProfit()),
-                String.format("%.2f%%", stock.getProfitPercentage())
-            };
-            tableModel.addRow(row);
-        }
+        updateQuickStatsContent(quickStatsPanel);
     }
     
-    private void updateAll() {
-        portfolio.checkAchievements();
-        portfolio.updateDailyProfitLoss();
-        
-        // Update level info
+    private void updateLevelWidgets() {
         levelLabel.setText(String.format("Level %d - %s", portfolio.getLevel(), portfolio.getLevelTitle()));
         
-        // Update exp bar
         int exp = portfolio.getExperience();
         int expNeeded = portfolio.getExpForNextLevel();
         expBar.setMaximum(expNeeded);
         expBar.setValue(exp);
         expBar.setString(String.format("%d / %d XP", exp, expNeeded));
-        
-        // Update health bar
-        int health = portfolio.getPortfolioHealthScore();
-        healthBar.setValue(health);
-        healthBar.setString(health + "% Healthy");
-        
-        // Update stats
+    }
+    
+    private void updateStatsWidgets() {
         statsLabel.setText("Total Trades: " + portfolio.getStats().get("totalTrades"));
+    }
+    
+    private void updateAchievementWidgets() {
+        ArrayList<String> achievements = portfolio.getAchievements();
+        for (Map.Entry<String, JLabel> entry : achievementLabels.entrySet()) {
+            boolean unlocked = achievements.contains(entry.getKey());
+            entry.getValue().setText(unlocked ? "[x] " + entry.getKey() : "[ ] " + entry.getKey());
+            entry.getValue().setForeground(unlocked ? SUCCESS_COLOR : Color.GRAY);
+        }
         
-        double dailyProfit = portfolio.getDailyProfitLoss();
-        dailyProfitLabel.setText(String.format("Daily P/L: ₹%.2f", dailyProfit));
-        dailyProfitLabel.setForeground(dailyProfit >= 0 ? SUCCESS_COLOR : DANGER_COLOR);
-        
-        // Achievements count
-        int unlocked = portfolio.getAchievements() != null ? portfolio.getAchievements().size() : 0;
+        int unlocked = achievements.size();
         achievementCountLabel.setText(String.format("Achievements: %d/6", unlocked));
         achievementCountLabel.setForeground(unlocked > 0 ? SUCCESS_COLOR : TEXT_COLOR);
-        
-        // Update table
-        updateTable();
-        
-        // Update achievements
-        updateAchievementPanel();
-        
-        // Update Quick Stats content (handles JScrollPane wrapper)
-        JSplitPane sp = (JSplitPane) ((JPanel) getContentPane().getComponent(0)).getComponent(1);
-        Component rightComp = sp.getRightComponent();
-        Container container = null;
-        if (rightComp instanceof JScrollPane) {
-            container = (Container) ((JScrollPane) rightComp).getViewport().getView();
-        } else if (rightComp instanceof Container) {
-            container = (Container) rightComp;
+    }
+    
+    // Fades the daily P/L label in and out a few times after it changes
+    private void pulseProfit(Color color) {
+        if (profitPulse != null) {
+            profitPulse.cancel();
         }
-        if (container != null) {
-            for (Component comp : container.getComponents()) {
-                if (comp instanceof JPanel) {
-                    JPanel panel = (JPanel) comp;
-                    if (panel.getComponentCount() > 0 && panel.getComponent(0) instanceof JLabel) {
-                        JLabel lbl = (JLabel) panel.getComponent(0);
-                        if ("Quick Stats".equals(lbl.getText())) {
-                            updateQuickStatsContent(panel);
-                            break;
-                        }
-                    }
-                }
+        profitPulse = animations.start(elapsed -> {
+            if (elapsed >= 1500) {
+                dailyProfitLabel.setForeground(color);
+                return false;
             }
-        }
+            int alpha = (int) (128 + 127 * Math.cos(elapsed / 500.0 * Math.PI));
+            dailyProfitLabel.setForeground(new Color(color.getRed(), color.getGreen(), color.getBlue(), alpha));
+            return true;
+        });
     }
     
-    private void updateAnimations() {
-        // Simple pulse animation for profit label
-        long time = System.currentTimeMillis();
-        int alpha = (int) (128 + 127 * Math.sin(time / 500.0));
-        // This would create smooth animations
+    private static Color blend(Color from, Color to, float amount) {
+        return new Color(
+            (int) (from.getRed() + (to.getRed() - from.getRed()) * amount),
+            (int) (from.getGreen() + (to.getGreen() - from.getGreen()) * amount),
+            (int) (from.getBlue() + (to.getBlue() - from.getBlue()) * amount));
     }
     
+    // Hands the save to the background service; skipped if nothing changed,
+    // merged with other requests made within a moment of each other
     private void autoSave() {
-        try {
-            portfolio.saveToFile(SAVE_FILE);
-            java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("hh:mm a");
-            statusLabel.setText("Auto-saved at " + sdf.format(new java.util.Date()));
-            statusLabel.setForeground(SUCCESS_COLOR);
-            
-            // Reset color after 3 seconds
-            Timer resetTimer = new Timer(3000, e -> {
-                statusLabel.setText("Ready");
-                statusLabel.setForeground(TEXT_COLOR);
-            });
-            resetTimer.setRepeats(false);
-            resetTimer.start();
-        } catch (Exception e) {
-            statusLabel.setText("Save failed: " + e.getMessage());
-            statusLabel.setForeground(DANGER_COLOR);
-        }
+        saveService.requestSave();
+    }
+    
+    private void showAutoSaved() {
+        java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("hh:mm a");
+        statusLabel.setText("Auto-saved at " + sdf.format(new java.util.Date()));
+        statusLabel.setForeground(SUCCESS_COLOR);
+        
+        // Reset color after 3 seconds
+        Timer resetTimer = new Timer(3000, e -> {
+            statusLabel.setText("Ready");
+            statusLabel.setForeground(TEXT_COLOR);
+        });
+        resetTimer.setRepeats(false);
+        resetTimer.start();
     }
     
     private void exportToCSV() {
@@ -1158,7 +1198,6 @@ public class GamifiedPortfolioGUI extends JFrame {
                 writer.close();
                 
                 portfolio.addExperience(15);
-                updateAll();
                 
                 JOptionPane.showMessageDialog(this,
                     "Portfolio exported successfully!\n\n+15 XP Earned!\n\nFile: " + filePath,
@@ -1177,45 +1216,15 @@ public class GamifiedPortfolioGUI extends JFrame {
             return;
         }
         
-        org.jfree.data.category.DefaultCategoryDataset dataset = new org.jfree.data.category.DefaultCategoryDataset();
-        
-        for (Stock stock : portfolio.getStocks()) {
-            dataset.addValue(stock.getProfit(), "Profit/Loss", stock.getSymbol());
-        }
-        
-        org.jfree.chart.JFreeChart chart = org.jfree.chart.ChartFactory.createBarChart(
-            "Profit/Loss per Stock",
-            "Stock Symbol",
-            "Profit/Loss (₹)",
-            dataset,
-            org.jfree.chart.plot.PlotOrientation.VERTICAL,
-            false,
-            true,
-            false
-        );
-        
-        // Customize colors
-        org.jfree.chart.plot.CategoryPlot plot = chart.getCategoryPlot();
-        org.jfree.chart.renderer.category.BarRenderer renderer = (org.jfree.chart.renderer.category.BarRenderer) plot.getRenderer();
-        
-        for (int i = 0; i < portfolio.getStockCount(); i++) {
-            Stock stock = portfolio.getStocks().get(i);
-            if (stock.getProfit() >= 0) {
-                renderer.setSeriesPaint(0, SUCCESS_COLOR);
-            } else {
-                renderer.setSeriesPaint(0, DANGER_COLOR);
-            }
+        charts().showBarChart(this);
+    }
+    
+    // Live charts; JFreeChart is only loaded from here
+    private PortfolioCharts charts() {
+        if (charts == null) {
+            charts = new PortfolioCharts(portfolio, events, SUCCESS_COLOR, DANGER_COLOR);
         }
-        
-        ChartPanel chartPanel = new ChartPanel(chart);
-        chartPanel.setPreferredSize(new Dimension(800, 500));
-        
-        JFrame chartFrame = new JFrame("Profit/Loss Bar Chart");
-        chartFrame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
-        chartFrame.add(chartPanel);
-        chartFrame.pack();
-        chartFrame.setLocationRelativeTo(this);
-        chartFrame.setVisible(true);
+        return charts;
     }
     
     private void toggleAutoRefresh() {
@@ -1272,32 +1281,41 @@ public class GamifiedPortfolioGUI extends JFrame {
     }
     
     private void refreshAllPrices() {
-        if (portfolio.getStockCount() == 0) return;
+        if (portfolio.getStockCount() == 0 || refreshing) return;
+        refreshing = true;
         
         statusLabel.setText("Refreshing prices...");
         statusLabel.setForeground(WARNING_COLOR);
         
-        SwingWorker<Void, String> worker = new SwingWorker<Void, String>() {
+        // The holdings are not thread-safe: only fetch in the background, apply on the event thread
+        java.util.List<String> symbols = portfolio.getSymbols();
+        SwingWorker<PriceRefresher.Result, String> worker = new SwingWorker<PriceRefresher.Result, String>() {
             @Override
-            protected Void doInBackground() throws Exception {
-                int updated = 0;
-                for (Stock stock : portfolio.getStocks()) {
-                    double newPrice = StockPriceAPI.fetchCurrentPrice(stock.getSymbol());
-                    if (newPrice > 0) {
-                        stock.setCurrentPrice(newPrice);
-                        updated++;
-                    }
-                }
-                return null;
+            protected PriceRefresher.Result doInBackground() throws Exception {
+                return priceRefresher.fetch(symbols, (symbol, price, completed, total) ->
+                    publish(String.format("Refreshing prices... %d/%d", completed, total)));
+            }
+            
+            @Override
+            protected void process(java.util.List<String> chunks) {
+                statusLabel.setText(chunks.get(chunks.size() - 1));
             }
             
             @Override
             protected void done() {
+                refreshing = false;
+                String summary = "";
+                try {
+                    PriceRefresher.Result result = get();
+                    portfolio.updatePrices(result.getPrices());
+                    summary = String.format(" (%d/%d updated)", result.getUpdated(), result.getTotal());
+                } catch (Exception e) {
+                    // Refresh was interrupted; the portfolio keeps its prices
+                }
                 autoSave();
-                updateAll();
                 portfolio.addExperience(5);
                 java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("hh:mm a");
-                statusLabel.setText("Prices refreshed at " + sdf.format(new java.util.Date()));
+                statusLabel.setText("Prices refreshed at " + sdf.format(new java.util.Date()) + summary);
                 statusLabel.setForeground(SUCCESS_COLOR);
                 
                 Timer resetTimer = new Timer(5000, e -> {
@@ -0,0 +1,385 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Downloads years of price history for many symbols into a
+ * {@link PriceHistory}, so analytics and charts can work from the local
+ * store instead of the network.
+ *
+ * For each symbol only the gap before its oldest stored sample is fetched:
+ * the part of it within the last few days (up to {@link #MAX_INTRADAY_DAYS})
+ * optionally as 5-minute bars, the rest as daily bars, through
+ * {@link StockPriceAPI#fetchHistory}. Symbols are fetched in parallel with a
+ * bounded number of requests in flight; every request also passes the
+ * shared rate limiter and circuit breaker, so a backfill cannot get the
+ * app throttled.
+ *
+ * Downloaded history is written in segments of many symbols each, and a
+ * checkpoint file then records how far back those symbols are covered.
+ * An interrupted backfill therefore loses at most one segment's worth of
+ * downloads: run again, it skips symbols already covered and fetches only
+ * what is still missing for the rest. The checkpoint also remembers
+ * symbols that have no older history (e.g. recent listings), which the
+ * store alone could not tell apart from symbols never backfilled.
+ */
+public class HistoryBackfill {
+
+    public static final String DEFAULT_CHECKPOINT = PriceHistory.DEFAULT_DIRECTORY + "/backfill.tsv";
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+    public static final int DEFAULT_YEARS = 5;
+
+    public static final String DAILY_INTERVAL = "1d";
+    public static final String INTRADAY_INTERVAL = "5m";
+    // Furthest back the chart endpoint serves 5-minute bars
+    public static final int MAX_INTRADAY_DAYS = 60;
+
+    // Symbols written to the store per segment (and per checkpoint update)
+    static final int SYMBOLS_PER_SEGMENT = 50;
+
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+    private static final String HEADER = "# Symbol\tCovered From";
+
+    /**
+     * Receives per-symbol results as they complete.
+     * Callbacks run on the thread that called {@link #backfill}, one at a time.
+     */
+    public interface Listener {
+        /**
+         * @param symbol Symbol that was backfilled
+         * @param samples Samples downloaded, 0 if it was covered already, or -1 if the download failed
+         * @param completed Number of symbols finished so far
+         * @param total Number of distinct symbols in this backfill
+         */
+        void onSymbol(String symbol, int samples, int completed, int total);
+    }
+
+    /**
+     * Summary of a finished backfill
+     */
+    public static class Result {
+        private final int total;
+        private final int downloaded;
+        private final int skipped;
+        private final int failed;
+        private final long samples;
+
+        Result(int total, int downloaded, int skipped, int failed, long samples) {
+            this.total = total;
+            this.downloaded = downloaded;
+            this.skipped = skipped;
+            this.failed = failed;
+            this.samples = samples;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        // Symbols whose missing history was downloaded
+        public int getDownloaded() {
+            return downloaded;
+        }
+
+        // Symbols covered by an earlier backfill
+        public int getSkipped() {
+            return skipped;
+        }
+
+        // Symbols to try again with the next backfill, including any left when interrupted
+        public int getFailed() {
+            return failed;
+        }
+
+        public long getSamples() {
+            return samples;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Backfilled %d of %d (%d already covered, %d failed), %d samples",
+                    downloaded, total, skipped, failed, samples);
+        }
+    }
+
+    private final PriceHistory history;
+    private final Path checkpoint;
+    private final int maxInFlight;
+    private final int years;
+    private final int intradayDays;
+
+    public HistoryBackfill() {
+        this(PriceHistory.getDefault(), Paths.get(DEFAULT_CHECKPOINT), DEFAULT_MAX_IN_FLIGHT, DEFAULT_YEARS, 0);
+    }
+
+    /**
+     * @param history Store the history is written to
+     * @param checkpoint File recording which symbols are covered (need not exist)
+     * @param maxInFlight Maximum number of symbols downloading at once
+     * @param years How far back to go with daily bars
+     * @param intradayDays How many of the most recent days to fetch as 5-minute bars instead; 0 for none
+     */
+    public HistoryBackfill(PriceHistory history, Path checkpoint, int maxInFlight, int years, int intradayDays) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be positive");
+        }
+        if (years <= 0) {
+            throw new IllegalArgumentException("years must be positive");
+        }
+        if (intradayDays < 0 || intradayDays > MAX_INTRADAY_DAYS) {
+            throw new IllegalArgumentException("intradayDays must be between 0 and " + MAX_INTRADAY_DAYS);
+        }
+        this.history = history;
+        this.checkpoint = checkpoint;
+        this.maxInFlight = maxInFlight;
+        this.years = years;
+        this.intradayDays = intradayDays;
+    }
+
+    /**
+     * Backfills every symbol held in the portfolio
+     *
+     * @param portfolio Portfolio whose symbols to backfill
+     * @param listener Optional per-symbol callback (may be null)
+     * @return Summary of the backfill
+     */
+    public Result backfill(Portfolio portfolio, Listener listener) throws IOException {
+        return backfill(portfolio.getSymbols(), listener);
+    }
+
+    /**
+     * Downloads whatever history the symbols are missing and writes it to
+     * the store. Blocks until every symbol is done. If the calling thread
+     * is interrupted, downloads already finished are still written before
+     * it returns.
+     *
+     * @param symbols Stock symbols (duplicates and case ignored)
+     * @param listener Optional per-symbol callback (may be null)
+     * @return Summary of the backfill
+     * @throws IOException if the history or checkpoint cannot be written
+     */
+    public Result backfill(Collection<String> symbols, Listener listener) throws IOException {
+        Set<String> unique = new LinkedHashSet<>();
+        for (String symbol : symbols) {
+            if (symbol != null && !symbol.trim().isEmpty()) {
+                unique.add(symbol.trim().toUpperCase());
+            }
+        }
+        int total = unique.size();
+        if (total == 0) {
+            return new Result(0, 0, 0, 0, 0);
+        }
+
+        long now = System.currentTimeMillis();
+        long from = now - years * 365L * DAY_MILLIS;
+        Map<String, Long> covered = loadCheckpoint();
+        List<String> missing = new ArrayList<>();
+        int completed = 0;
+        int skipped = 0;
+        for (String symbol : unique) {
+            Long coveredFrom = covered.get(symbol);
+            // Within a day, so re-running the same backfill does not fetch each symbol again
+            if (coveredFrom != null && coveredFrom - from < DAY_MILLIS) {
+                skipped++;
+                completed++;
+                if (listener != null) {
+                    listener.onSymbol(symbol, 0, completed, total);
+                }
+            } else {
+                missing.add(symbol);
+            }
+        }
+        if (missing.isEmpty()) {
+            return new Result(total, 0, skipped, 0, 0);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(maxInFlight, missing.size()), daemonThreads());
+        CompletionService<Map.Entry<String, PriceHistory.Samples>> completion = new ExecutorCompletionService<>(executor);
+        for (String symbol : missing) {
+            long until = Math.min(now, history.getFirstTimestamp(symbol));
+            completion.submit(() -> Map.entry(symbol, download(symbol, from, until, now)));
+        }
+
+        Map<String, PriceHistory.Samples> batch = new LinkedHashMap<>();
+        int downloaded = 0;
+        long samples = 0;
+        boolean interrupted = false;
+        try {
+            for (int pending = missing.size(); pending > 0; pending--) {
+                Map.Entry<String, PriceHistory.Samples> result = completion.take().get();
+                String symbol = result.getKey();
+                PriceHistory.Samples downloads = result.getValue();
+                completed++;
+                if (downloads != null) {
+                    batch.put(symbol, downloads);
+                    downloaded++;
+                    samples += downloads.size();
+                }
+                if (listener != null) {
+                    listener.onSymbol(symbol, downloads != null ? downloads.size() : -1, completed, total);
+                }
+                if (batch.size() == SYMBOLS_PER_SEGMENT) {
+                    write(batch, covered, from);
+                }
+            }
+        } catch (InterruptedException e) {
+            interrupted = true;
+        } catch (ExecutionException e) {
+            // download never throws, so this only happens on a programming error
+            System.err.println("Backfill task failed: " + e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        // With the interrupt still set, the file channels would refuse to write
+        try {
+            write(batch, covered, from);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return new Result(total, downloaded, skipped, total - skipped - downloaded, samples);
+    }
+
+    // Everything in [from, until), the last intradayDays before now in intraday bars; null if a request failed
+    private PriceHistory.Samples download(String symbol, long from, long until, long now) {
+        PriceHistory.Samples samples = new PriceHistory.Samples();
+        if (until <= from) {
+            return samples;
+        }
+        long dailyUntil = until;
+        long intradayFrom = Math.max(from, now - intradayDays * DAY_MILLIS);
+        if (intradayDays > 0 && intradayFrom < until) {
+            if (StockPriceAPI.fetchHistory(symbol, INTRADAY_INTERVAL, intradayFrom, until, samples::add) < 0) {
+                return null;
+            }
+            // Daily bars only where there are no intraday ones
+            if (samples.size() > 0) {
+                dailyUntil = samples.getTimestamp(0);
+            }
+        }
+        if (StockPriceAPI.fetchHistory(symbol, DAILY_INTERVAL, from, dailyUntil, samples::add) < 0) {
+            return null;
+        }
+        return samples;
+    }
+
+    // Writes a batch to the store, then marks its symbols covered
+    private void write(Map<String, PriceHistory.Samples> batch, Map<String, Long> covered, long from) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        history.importSamples(batch);
+        for (String symbol : batch.keySet()) {
+            covered.merge(symbol, from, Math::min);
+        }
+        batch.clear();
+        saveCheckpoint(covered);
+    }
+
+    private Map<String, Long> loadCheckpoint() {
+        Map<String, Long> covered = new HashMap<>();
+        if (!Files.exists(checkpoint)) {
+            return covered;
+        }
+        try (BufferedReader in = Files.newBufferedReader(checkpoint, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) continue;
+
+                String[] parts = line.split("\t", -1);
+                try {
+                    if (parts.length < 2) {
+                        throw new NumberFormatException();
+                    }
+                    covered.put(parts[0].trim().toUpperCase(), Long.parseLong(parts[1].trim()));
+                } catch (NumberFormatException e) {
+                    System.err.println("Skipping invalid backfill checkpoint line: " + line);
+                }
+            }
+        } catch (IOException e) {
+            // Only costs downloads; the gaps in the store are found again
+            System.err.println("Error loading backfill checkpoint: " + e.getMessage());
+        }
+        return covered;
+    }
+
+    private void saveCheckpoint(Map<String, Long> covered) throws IOException {
+        // Write to a temp file and swap it in so a crash never leaves a torn file
+        Path parent = checkpoint.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            out.write(HEADER);
+            out.newLine();
+            for (Map.Entry<String, Long> entry : covered.entrySet()) {
+                out.write(entry.getKey() + "\t" + entry.getValue());
+                out.newLine();
+            }
+        }
+        try {
+            Files.move(temp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, checkpoint, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, "history-backfill-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * Backfills the symbols of a saved portfolio into the default store.
+     *
+     * Usage: java HistoryBackfill [portfolio file] [years] [intraday days]
+     */
+    public static void main(String[] args) throws Exception {
+        Path file = Paths.get(args.length > 0 ? args[0] : "portfolio.dat");
+        int years = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_YEARS;
+        int intradayDays = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+
+        Portfolio portfolio = PortfolioFile.read(file);
+        PortfolioJournal.replay(portfolio, PortfolioJournal.journalFileFor(file));
+
+        PriceHistory history = PriceHistory.getDefault();
+        HistoryBackfill backfill = new HistoryBackfill(history, Paths.get(DEFAULT_CHECKPOINT),
+                DEFAULT_MAX_IN_FLIGHT, years, intradayDays);
+        long start = System.nanoTime();
+        Result result = backfill.backfill(portfolio, (symbol, samples, completed, total) ->
+                System.out.printf("[%d/%d] %s: %s%n", completed, total, symbol,
+                        samples < 0 ? "failed" : samples + " samples"));
+        history.close();
+
+        System.out.printf("%s in %.1f s%n", result, (System.nanoTime() - start) / 1e9);
+        System.out.println("Price history: " + history);
+        System.out.println("Rate limiter: " + StockPriceAPI.getRateLimiter());
+    }
+}
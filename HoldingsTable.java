@@ -0,0 +1,538 @@
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Columnar (struct-of-arrays) store behind {@link Portfolio}.
+ * Each position is one row across parallel primitive arrays, so totals,
+ * sorts and revaluation walk contiguous memory instead of chasing one
+ * heap object per position.
+ *
+ * Symbols are interned to small integer ids. An id stays attached to its
+ * position while rows move around (sorting, removals), which is what
+ * {@link Stock} handles hold on to. Ids of removed positions are reused.
+ *
+ * Not thread-safe, like the rest of Portfolio.
+ */
+public class HoldingsTable {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    // Symbol table, indexed by id
+    private String[] symbols;   // As entered
+    private String[] keys;      // Trimmed, upper-case lookup key (null while the id is free)
+    private String[] names;
+    private int[] rowOfId;
+    private Stock[] handles;    // Allocated with the first handle, entries created on demand
+    private int idCount;
+    private int[] freeIds = new int[0];
+    private int freeCount;
+
+    // Open-addressing hash index over keys: holds id + 1, 0 marks an empty slot
+    private int[] slots;
+
+    // Rows, in display order
+    private int[] ids;
+    private int[] quantities;
+    private double[] buyPrices;
+    private double[] currentPrices;
+    private int size;
+
+    // Running totals, adjusted on every change
+    private double totalInvestment;
+    private double totalValue;
+
+    // Bumped by every change, including re-sorts
+    private long modCount;
+
+    private final List<Stock> view = new StockView();
+    private ChangeListener listener;
+
+    /**
+     * Told about quantity and price edits, including those made through
+     * {@link Stock} handles that bypass {@link Portfolio}
+     */
+    public interface ChangeListener {
+        void quantityChanged(String symbol, int quantity);
+
+        void priceChanged(String symbol, double price);
+    }
+
+    public HoldingsTable() {
+        symbols = new String[INITIAL_CAPACITY];
+        keys = new String[INITIAL_CAPACITY];
+        names = new String[INITIAL_CAPACITY];
+        rowOfId = new int[INITIAL_CAPACITY];
+        ids = new int[INITIAL_CAPACITY];
+        quantities = new int[INITIAL_CAPACITY];
+        buyPrices = new double[INITIAL_CAPACITY];
+        currentPrices = new double[INITIAL_CAPACITY];
+        slots = new int[INITIAL_CAPACITY * 2];
+    }
+
+    /**
+     * @param listener Listener for quantity and price edits, or null for none
+     */
+    public void setChangeListener(ChangeListener listener) {
+        this.listener = listener;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param symbol Stock symbol (case and surrounding whitespace ignored)
+     * @return Id of the position holding the symbol, or -1
+     */
+    public int find(String symbol) {
+        int entry = slots[slotOf(normalize(symbol))];
+        return entry - 1;
+    }
+
+    /**
+     * Appends a position for a symbol that is not held yet
+     *
+     * @return Id of the new position
+     */
+    public int insert(String name, String symbol, int quantity, double buyPrice, double currentPrice) {
+        String key = normalize(symbol);
+        int slot = slotOf(key);
+        if (slots[slot] != 0) {
+            throw new IllegalStateException("Symbol already held: " + symbol);
+        }
+
+        int id = allocateId();
+        symbols[id] = symbol;
+        keys[id] = key;
+        names[id] = name;
+
+        int row = size++;
+        ids[row] = id;
+        rowOfId[id] = row;
+        quantities[row] = quantity;
+        buyPrices[row] = buyPrice;
+        currentPrices[row] = currentPrice;
+        totalInvestment += quantity * buyPrice;
+        totalValue += quantity * currentPrice;
+
+        slots[slot] = id + 1;
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        modCount++;
+        return id;
+    }
+
+    /**
+     * Folds another holding of the same symbol into a position.
+     * Quantities are added and the buy price becomes the quantity-weighted
+     * average; a positive current price is taken as the newer one.
+     */
+    public void merge(int id, int quantity, double buyPrice, double currentPrice) {
+        int row = rowOfId[id];
+        int oldQuantity = quantities[row];
+        double oldInvestment = oldQuantity * buyPrices[row];
+        double oldValue = oldQuantity * currentPrices[row];
+
+        int mergedQuantity = oldQuantity + quantity;
+        if (mergedQuantity > 0) {
+            buyPrices[row] = (oldInvestment + quantity * buyPrice) / mergedQuantity;
+        }
+        quantities[row] = mergedQuantity;
+        if (currentPrice > 0) {
+            currentPrices[row] = currentPrice;
+        }
+
+        totalInvestment += quantities[row] * buyPrices[row] - oldInvestment;
+        totalValue += quantities[row] * currentPrices[row] - oldValue;
+        modCount++;
+    }
+
+    /**
+     * Removes a position. Its handle, if any, keeps the last values and
+     * becomes a plain detached Stock. Later rows shift up one place so
+     * display order is preserved.
+     */
+    public void remove(int id) {
+        int row = rowOfId[id];
+        Stock handle = handles != null ? handles[id] : null;
+        if (handle != null) {
+            handle.unbind(quantities[row], buyPrices[row], currentPrices[row]);
+            handles[id] = null;
+        }
+
+        totalInvestment -= quantities[row] * buyPrices[row];
+        totalValue -= quantities[row] * currentPrices[row];
+
+        int moved = size - row - 1;
+        System.arraycopy(ids, row + 1, ids, row, moved);
+        System.arraycopy(quantities, row + 1, quantities, row, moved);
+        System.arraycopy(buyPrices, row + 1, buyPrices, row, moved);
+        System.arraycopy(currentPrices, row + 1, currentPrices, row, moved);
+        size--;
+        for (int r = row; r < size; r++) {
+            rowOfId[ids[r]] = r;
+        }
+
+        removeSlot(slotOf(keys[id]));
+        symbols[id] = null;
+        keys[id] = null;
+        names[id] = null;
+        rowOfId[id] = -1;
+        freeId(id);
+
+        if (size == 0) {
+            // Nothing left to sum - drop any accumulated rounding error
+            totalInvestment = 0;
+            totalValue = 0;
+        }
+        modCount++;
+    }
+
+    // Column access by id (used by Stock handles)
+
+    public String symbolOf(int id) {
+        return symbols[id];
+    }
+
+    public String nameOf(int id) {
+        return names[id];
+    }
+
+    public int quantityOf(int id) {
+        return quantities[rowOfId[id]];
+    }
+
+    public double buyPriceOf(int id) {
+        return buyPrices[rowOfId[id]];
+    }
+
+    public double currentPriceOf(int id) {
+        return currentPrices[rowOfId[id]];
+    }
+
+    public void setQuantity(int id, int quantity) {
+        int row = rowOfId[id];
+        totalInvestment += (quantity - quantities[row]) * buyPrices[row];
+        totalValue += (quantity - quantities[row]) * currentPrices[row];
+        quantities[row] = quantity;
+        modCount++;
+        if (listener != null) {
+            listener.quantityChanged(symbols[id], quantity);
+        }
+    }
+
+    public void setCurrentPrice(int id, double price) {
+        int row = rowOfId[id];
+        totalValue += quantities[row] * (price - currentPrices[row]);
+        currentPrices[row] = price;
+        modCount++;
+        if (listener != null) {
+            listener.priceChanged(symbols[id], price);
+        }
+    }
+
+    // Column access by row (display order)
+
+    public int idAt(int row) {
+        checkRow(row);
+        return ids[row];
+    }
+
+    public String symbolAt(int row) {
+        return symbols[idAt(row)];
+    }
+
+    public String nameAt(int row) {
+        return names[idAt(row)];
+    }
+
+    public int quantityAt(int row) {
+        checkRow(row);
+        return quantities[row];
+    }
+
+    public double buyPriceAt(int row) {
+        checkRow(row);
+        return buyPrices[row];
+    }
+
+    public double currentPriceAt(int row) {
+        checkRow(row);
+        return currentPrices[row];
+    }
+
+    /**
+     * @return Stock bound to the position, created the first time it is asked for
+     */
+    public Stock handle(int id) {
+        if (handles == null) {
+            handles = new Stock[symbols.length];
+        }
+        Stock handle = handles[id];
+        if (handle == null) {
+            handle = new Stock(names[id], symbols[id], 0, 0, 0);
+            handle.bind(this, id);
+            handles[id] = handle;
+        }
+        return handle;
+    }
+
+    /**
+     * @return Live, read-only list of position handles in display order
+     */
+    public List<Stock> asList() {
+        return view;
+    }
+
+    /**
+     * @return Detached copies of every position, in display order
+     */
+    public ArrayList<Stock> toStocks() {
+        ArrayList<Stock> copies = new ArrayList<>(size);
+        for (int row = 0; row < size; row++) {
+            int id = ids[row];
+            copies.add(new Stock(names[id], symbols[id], quantities[row], buyPrices[row], currentPrices[row]));
+        }
+        return copies;
+    }
+
+    public double getTotalInvestment() {
+        return totalInvestment;
+    }
+
+    public double getTotalValue() {
+        return totalValue;
+    }
+
+    /**
+     * @return Counter that changes whenever the table does; equal values mean no change in between
+     */
+    public long getModCount() {
+        return modCount;
+    }
+
+    /**
+     * Compares the running totals against a full recompute over the columns.
+     * A small relative tolerance absorbs rounding from incremental updates.
+     *
+     * @return true if the running totals match
+     */
+    public boolean checkTotals() {
+        double investment = 0;
+        double value = 0;
+        for (int row = 0; row < size; row++) {
+            investment += quantities[row] * buyPrices[row];
+            value += quantities[row] * currentPrices[row];
+        }
+        return closeEnough(investment, totalInvestment) && closeEnough(value, totalValue);
+    }
+
+    private static boolean closeEnough(double expected, double actual) {
+        return Math.abs(expected - actual) <= 1e-9 * Math.max(1, Math.abs(expected)) + 1e-6;
+    }
+
+    // Sorting. All sorts are stable, like List.sort.
+
+    public void sortByName() {
+        int[] order = identityOrder();
+        mergeSort(order, new int[size], 0, size, (a, b) -> names[ids[a]].compareTo(names[ids[b]]));
+        applyOrder(order);
+    }
+
+    // Highest profit first
+    public void sortByProfit() {
+        double[] profit = new double[size];
+        for (int row = 0; row < size; row++) {
+            profit[row] = quantities[row] * currentPrices[row] - quantities[row] * buyPrices[row];
+        }
+        int[] order = identityOrder();
+        mergeSort(order, new int[size], 0, size, (a, b) -> Double.compare(profit[b], profit[a]));
+        applyOrder(order);
+    }
+
+    // Highest current value first
+    public void sortByValue() {
+        double[] value = new double[size];
+        for (int row = 0; row < size; row++) {
+            value[row] = quantities[row] * currentPrices[row];
+        }
+        int[] order = identityOrder();
+        mergeSort(order, new int[size], 0, size, (a, b) -> Double.compare(value[b], value[a]));
+        applyOrder(order);
+    }
+
+    private interface RowComparator {
+        int compare(int rowA, int rowB);
+    }
+
+    private int[] identityOrder() {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        return order;
+    }
+
+    private static void mergeSort(int[] order, int[] buffer, int from, int to, RowComparator comparator) {
+        if (to - from <= 16) {
+            // Insertion sort for short runs
+            for (int i = from + 1; i < to; i++) {
+                int row = order[i];
+                int j = i - 1;
+                while (j >= from && comparator.compare(order[j], row) > 0) {
+                    order[j + 1] = order[j];
+                    j--;
+                }
+                order[j + 1] = row;
+            }
+            return;
+        }
+
+        int mid = (from + to) >>> 1;
+        mergeSort(order, buffer, from, mid, comparator);
+        mergeSort(order, buffer, mid, to, comparator);
+        if (comparator.compare(order[mid - 1], order[mid]) <= 0) {
+            return; // Already in order
+        }
+
+        System.arraycopy(order, from, buffer, from, to - from);
+        int left = from;
+        int right = mid;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < mid && comparator.compare(buffer[left], buffer[right]) <= 0)) {
+                order[i] = buffer[left++];
+            } else {
+                order[i] = buffer[right++];
+            }
+        }
+    }
+
+    // Rearranges every row column into the given order of old row numbers
+    private void applyOrder(int[] order) {
+        int[] newIds = new int[ids.length];
+        int[] newQuantities = new int[quantities.length];
+        double[] newBuyPrices = new double[buyPrices.length];
+        double[] newCurrentPrices = new double[currentPrices.length];
+        for (int row = 0; row < size; row++) {
+            int from = order[row];
+            newIds[row] = ids[from];
+            newQuantities[row] = quantities[from];
+            newBuyPrices[row] = buyPrices[from];
+            newCurrentPrices[row] = currentPrices[from];
+            rowOfId[newIds[row]] = row;
+        }
+        ids = newIds;
+        quantities = newQuantities;
+        buyPrices = newBuyPrices;
+        currentPrices = newCurrentPrices;
+        modCount++;
+    }
+
+    // Id allocation. Ids never exceed the row capacity, so both grow together.
+
+    private int allocateId() {
+        if (freeCount > 0) {
+            return freeIds[--freeCount];
+        }
+        if (idCount == ids.length) {
+            grow(ids.length * 2);
+        }
+        return idCount++;
+    }
+
+    private void freeId(int id) {
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, Math.max(8, freeIds.length * 2));
+        }
+        freeIds[freeCount++] = id;
+    }
+
+    private void grow(int capacity) {
+        symbols = Arrays.copyOf(symbols, capacity);
+        keys = Arrays.copyOf(keys, capacity);
+        names = Arrays.copyOf(names, capacity);
+        rowOfId = Arrays.copyOf(rowOfId, capacity);
+        if (handles != null) {
+            handles = Arrays.copyOf(handles, capacity);
+        }
+        ids = Arrays.copyOf(ids, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+        buyPrices = Arrays.copyOf(buyPrices, capacity);
+        currentPrices = Arrays.copyOf(currentPrices, capacity);
+    }
+
+    // Hash index (linear probing, kept at most half full)
+
+    private int slotOf(String key) {
+        int mask = slots.length - 1;
+        int slot = hash(key) & mask;
+        while (true) {
+            int entry = slots[slot];
+            if (entry == 0 || keys[entry - 1].equals(key)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    // Backward-shift deletion, so lookups never need tombstones
+    private void removeSlot(int slot) {
+        int mask = slots.length - 1;
+        int hole = slot;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            int entry = slots[next];
+            if (entry == 0) {
+                break;
+            }
+            int home = hash(keys[entry - 1]) & mask;
+            // Move the entry into the hole unless its home lies cyclically in (hole, next]
+            boolean homeBetween = hole <= next ? (home > hole && home <= next) : (home > hole || home <= next);
+            if (!homeBetween) {
+                slots[hole] = entry;
+                hole = next;
+            }
+        }
+        slots[hole] = 0;
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        for (int row = 0; row < size; row++) {
+            int id = ids[row];
+            slots[slotOf(keys[id])] = id + 1;
+        }
+    }
+
+    private static int hash(String key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static String normalize(String symbol) {
+        return symbol.trim().toUpperCase();
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+    }
+
+    private class StockView extends AbstractList<Stock> implements RandomAccess {
+        @Override
+        public Stock get(int row) {
+            return handle(idAt(row));
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
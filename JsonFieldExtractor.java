@@ -0,0 +1,396 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streaming extractor for a handful of scalar fields in a JSON document.
+ * Reads UTF-8 bytes straight from a stream through one reusable buffer,
+ * only creates Strings for the values it was asked for, and stops reading
+ * as soon as it has them.
+ *
+ * Fields are only taken from objects that sit directly under the given
+ * parent key (or are elements of an array under that key), so e.g. the
+ * "regularMarketPrice" of a chart response is read from "meta" and never
+ * from some other part of the payload.
+ *
+ * Instances keep their buffers between calls and are not thread-safe;
+ * use one per thread.
+ */
+public class JsonFieldExtractor {
+
+    private static final int MAX_DEPTH = 64;
+
+    private final byte[] parentKey;
+    private final byte[][] fields;
+
+    // Parser state, reset on every extract call
+    private InputStream in;
+    private final byte[] readBuffer = new byte[8192];
+    private int readPos;
+    private int readLimit;
+    private byte[] token = new byte[256];
+    private int tokenLength;
+    private final boolean[] isObject = new boolean[MAX_DEPTH];
+    private final boolean[] isMatch = new boolean[MAX_DEPTH];
+    private int depth;
+
+    /**
+     * @param parentKey Key of the object (or array of objects) holding the fields
+     * @param fields Field names to extract; results are returned in the same order
+     */
+    public JsonFieldExtractor(String parentKey, String... fields) {
+        this.parentKey = parentKey.getBytes(StandardCharsets.UTF_8);
+        this.fields = new byte[fields.length][];
+        for (int i = 0; i < fields.length; i++) {
+            this.fields[i] = fields[i].getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Extracts the fields of the first matching object.
+     * Reading stops once every field has been found or that object ends.
+     *
+     * @param in JSON input (not closed by this method)
+     * @return Values in field order; missing fields and JSON nulls are null
+     */
+    public String[] extractFirst(InputStream in) throws IOException {
+        List<String[]> found = scan(in, true);
+        return found.isEmpty() ? new String[fields.length] : found.get(0);
+    }
+
+    /**
+     * Extracts the fields of every matching object in the document
+     *
+     * @param in JSON input (not closed by this method)
+     * @return One value array per matching object, in document order
+     */
+    public List<String[]> extractAll(InputStream in) throws IOException {
+        return scan(in, false);
+    }
+
+    /**
+     * Extracts arrays of numbers, such as the "timestamp" and "close" series
+     * of a chart response. For each field the first array found directly in
+     * a matching object is read; reading stops once every field has one.
+     *
+     * @param in JSON input (not closed by this method)
+     * @return Arrays in field order, JSON nulls as NaN; null for fields not found
+     */
+    public double[][] extractNumberArrays(InputStream in) throws IOException {
+        this.in = in;
+        readPos = 0;
+        readLimit = 0;
+        depth = 0;
+
+        double[][] arrays = new double[fields.length][];
+        int found = 0;
+        boolean expectKey = false;
+        boolean keyIsParent = false;
+        int keyField = -1;
+
+        // The array being read, if any
+        int arrayField = -1;
+        int arrayDepth = 0;
+        double[] values = null;
+        int count = 0;
+
+        int c;
+        while ((c = nextNonWhitespace()) != -1) {
+            switch (c) {
+                case '{':
+                case '[': {
+                    boolean match = depth > 0 && (isObject[depth - 1] ? keyIsParent : isMatch[depth - 1]);
+                    boolean fieldArray = c == '[' && arrayField < 0 && keyField >= 0 && arrays[keyField] == null
+                            && depth > 0 && isObject[depth - 1] && isMatch[depth - 1];
+                    if (depth == MAX_DEPTH) {
+                        throw new IOException("JSON nested too deeply");
+                    }
+                    isObject[depth] = c == '{';
+                    isMatch[depth] = match;
+                    depth++;
+                    if (fieldArray) {
+                        arrayField = keyField;
+                        arrayDepth = depth;
+                        values = new double[256];
+                        count = 0;
+                    }
+                    expectKey = c == '{';
+                    keyIsParent = false;
+                    keyField = -1;
+                    break;
+                }
+                case '}':
+                case ']': {
+                    if (depth == 0) {
+                        throw new IOException("Unbalanced JSON");
+                    }
+                    if (arrayField >= 0 && depth == arrayDepth) {
+                        arrays[arrayField] = Arrays.copyOf(values, count);
+                        arrayField = -1;
+                        if (++found == fields.length) {
+                            return arrays;
+                        }
+                    }
+                    depth--;
+                    break;
+                }
+                case ',':
+                    expectKey = depth > 0 && isObject[depth - 1];
+                    break;
+                case ':':
+                    expectKey = false;
+                    break;
+                case '"':
+                    readString();
+                    if (expectKey) {
+                        keyIsParent = tokenEquals(parentKey);
+                        keyField = fieldIndex();
+                    }
+                    break;
+                default:
+                    readLiteral(c);
+                    if (arrayField >= 0 && depth == arrayDepth) {
+                        if (count == values.length) {
+                            values = Arrays.copyOf(values, count * 2);
+                        }
+                        values[count++] = numberValue();
+                    }
+                    break;
+            }
+        }
+
+        return arrays;
+    }
+
+    private double numberValue() throws IOException {
+        if (tokenLength == 4 && token[0] == 'n' && token[1] == 'u' && token[2] == 'l' && token[3] == 'l') {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(new String(token, 0, tokenLength, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            throw new IOException("Not a number in JSON array: " + new String(token, 0, tokenLength, StandardCharsets.UTF_8));
+        }
+    }
+
+    private List<String[]> scan(InputStream in, boolean firstOnly) throws IOException {
+        this.in = in;
+        readPos = 0;
+        readLimit = 0;
+        depth = 0;
+
+        List<String[]> results = new ArrayList<>();
+        String[] current = null;
+        int found = 0;
+        boolean expectKey = false;
+        boolean keyIsParent = false;
+        int keyField = -1;
+
+        int c;
+        while ((c = nextNonWhitespace()) != -1) {
+            switch (c) {
+                case '{':
+                case '[': {
+                    boolean match = depth > 0 && (isObject[depth - 1] ? keyIsParent : isMatch[depth - 1]);
+                    if (depth == MAX_DEPTH) {
+                        throw new IOException("JSON nested too deeply");
+                    }
+                    isObject[depth] = c == '{';
+                    isMatch[depth] = match;
+                    depth++;
+                    if (c == '{' && match) {
+                        current = new String[fields.length];
+                        found = 0;
+                    }
+                    expectKey = c == '{';
+                    keyIsParent = false;
+                    keyField = -1;
+                    break;
+                }
+                case '}':
+                case ']': {
+                    if (depth == 0) {
+                        throw new IOException("Unbalanced JSON");
+                    }
+                    depth--;
+                    if (c == '}' && isMatch[depth] && current != null) {
+                        results.add(current);
+                        current = null;
+                        if (firstOnly) return results;
+                    }
+                    break;
+                }
+                case ',':
+                    expectKey = depth > 0 && isObject[depth - 1];
+                    break;
+                case ':':
+                    expectKey = false;
+                    break;
+                case '"':
+                    readString();
+                    if (expectKey) {
+                        keyIsParent = tokenEquals(parentKey);
+                        keyField = fieldIndex();
+                    } else if (storeValue(current, keyField, true)) {
+                        if (++found == fields.length && firstOnly) {
+                            results.add(current);
+                            return results;
+                        }
+                    }
+                    break;
+                default:
+                    readLiteral(c);
+                    if (!expectKey && storeValue(current, keyField, false)) {
+                        if (++found == fields.length && firstOnly) {
+                            results.add(current);
+                            return results;
+                        }
+                    }
+                    break;
+            }
+        }
+
+        return results;
+    }
+
+    private boolean storeValue(String[] current, int keyField, boolean quoted) {
+        if (current == null || keyField < 0 || depth == 0) return false;
+        if (!isObject[depth - 1] || !isMatch[depth - 1]) return false;
+        if (current[keyField] != null) return false;
+
+        if (!quoted && tokenLength == 4 && token[0] == 'n' && token[1] == 'u' && token[2] == 'l' && token[3] == 'l') {
+            return false;
+        }
+        current[keyField] = new String(token, 0, tokenLength, StandardCharsets.UTF_8);
+        return true;
+    }
+
+    private int fieldIndex() {
+        for (int i = 0; i < fields.length; i++) {
+            if (tokenEquals(fields[i])) return i;
+        }
+        return -1;
+    }
+
+    private boolean tokenEquals(byte[] expected) {
+        if (expected.length != tokenLength) return false;
+        for (int i = 0; i < tokenLength; i++) {
+            if (token[i] != expected[i]) return false;
+        }
+        return true;
+    }
+
+    // Reads a string body (opening quote already consumed) into the token buffer
+    private void readString() throws IOException {
+        tokenLength = 0;
+        while (true) {
+            int c = next();
+            if (c == -1) throw new IOException("Unterminated JSON string");
+            if (c == '"') return;
+            if (c == '\\') {
+                int e = next();
+                switch (e) {
+                    case 'n': append('\n'); break;
+                    case 't': append('\t'); break;
+                    case 'r': append('\r'); break;
+                    case 'b': append('\b'); break;
+                    case 'f': append('\f'); break;
+                    case 'u': appendCodeUnit(readHex4()); break;
+                    case -1: throw new IOException("Unterminated JSON string");
+                    default: append(e); break; // \" \\ \/
+                }
+            } else {
+                append(c);
+            }
+        }
+    }
+
+    private int readHex4() throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(next(), 16);
+            if (digit < 0) throw new IOException("Invalid \\u escape");
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    // Encodes a UTF-16 code unit from a \\u escape as UTF-8 (surrogate pairs combined)
+    private void appendCodeUnit(int unit) throws IOException {
+        int codePoint = unit;
+        if (Character.isHighSurrogate((char) unit)) {
+            if (next() == '\\' && next() == 'u') {
+                int low = readHex4();
+                codePoint = Character.toCodePoint((char) unit, (char) low);
+            } else {
+                throw new IOException("Unpaired surrogate in JSON string");
+            }
+        }
+        if (codePoint < 0x80) {
+            append(codePoint);
+        } else if (codePoint < 0x800) {
+            append(0xC0 | (codePoint >> 6));
+            append(0x80 | (codePoint & 0x3F));
+        } else if (codePoint < 0x10000) {
+            append(0xE0 | (codePoint >> 12));
+            append(0x80 | ((codePoint >> 6) & 0x3F));
+            append(0x80 | (codePoint & 0x3F));
+        } else {
+            append(0xF0 | (codePoint >> 18));
+            append(0x80 | ((codePoint >> 12) & 0x3F));
+            append(0x80 | ((codePoint >> 6) & 0x3F));
+            append(0x80 | (codePoint & 0x3F));
+        }
+    }
+
+    // Reads a number, true, false or null starting with the given byte
+    private void readLiteral(int first) throws IOException {
+        tokenLength = 0;
+        append(first);
+        while (true) {
+            int c = peek();
+            if (c == -1 || c == ',' || c == '}' || c == ']' || c == ':' || isWhitespace(c)) return;
+            append(next());
+        }
+    }
+
+    private void append(int b) {
+        if (tokenLength == token.length) {
+            token = Arrays.copyOf(token, token.length * 2);
+        }
+        token[tokenLength++] = (byte) b;
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        int c;
+        do {
+            c = next();
+        } while (c != -1 && isWhitespace(c));
+        return c;
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    private int next() throws IOException {
+        if (readPos == readLimit && !fill()) return -1;
+        return readBuffer[readPos++] & 0xFF;
+    }
+
+    private int peek() throws IOException {
+        if (readPos == readLimit && !fill()) return -1;
+        return readBuffer[readPos] & 0xFF;
+    }
+
+    private boolean fill() throws IOException {
+        int n = in.read(readBuffer, 0, readBuffer.length);
+        if (n <= 0) return false;
+        readPos = 0;
+        readLimit = n;
+        return true;
+    }
+}
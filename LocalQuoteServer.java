@@ -0,0 +1,463 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local stand-in for the Yahoo Finance endpoints used by {@link StockPriceAPI}.
+ * Serves recorded chart and search payloads from a directory so refresh
+ * performance can be measured, and incidents reproduced, on an offline
+ * machine. Latency, error rate and throttling are configurable.
+ *
+ * Payload layout (file names are upper-case symbols):
+ * <pre>
+ *   payloads/chart/RELIANCE.NS.json    - /v8/finance/chart/RELIANCE.NS
+ *   payloads/search/RELIANCE.NS.json   - /v1/finance/search?q=RELIANCE.NS
+ *   payloads/history/RELIANCE.NS.1d.json - /v8/finance/chart/RELIANCE.NS?interval=1d&period1=...
+ * </pre>
+ * Batch quotes (/v7/finance/quote) are assembled from the chart payloads.
+ * A history recording is served for any period; synthesized history has
+ * one bar per interval on weekdays between period1 and period2.
+ * Symbols without a recording are either synthesized, recorded from an
+ * upstream server, or answered with 404, depending on the options.
+ *
+ * Usage:
+ * <pre>
+ *   java LocalQuoteServer --port 8089 --latency 80 --jitter 40 --error-rate 0.02 --rps 50
+ *   java -Dstockapi.baseUrl=http://localhost:8089 GamifiedPortfolioGUI
+ * </pre>
+ */
+public class LocalQuoteServer {
+
+    public static final String DEFAULT_PAYLOAD_DIR = "payloads";
+
+    private int port = 8089;
+    private Path payloadDir = Paths.get(DEFAULT_PAYLOAD_DIR);
+    private long latencyMillis;
+    private long jitterMillis;
+    private double errorRate;
+    private int maxRequestsPerSecond; // 0 = unlimited
+    private boolean synthesizeMissing = true;
+    private String recordFrom; // Upstream base URL used to record missing payloads
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private final Random random = new Random(42);
+    private final JsonFieldExtractor chartMeta =
+            new JsonFieldExtractor("meta", "regularMarketPrice", "chartPreviousClose", "currency", "regularMarketTime");
+
+    // Throttling window
+    private long windowStart;
+    private int windowCount;
+
+    // Counters
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong served = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong notFound = new AtomicLong();
+
+    public LocalQuoteServer setPort(int port) {
+        this.port = port;
+        return this;
+    }
+
+    public LocalQuoteServer setPayloadDir(Path payloadDir) {
+        this.payloadDir = payloadDir;
+        return this;
+    }
+
+    /**
+     * @param latencyMillis Fixed delay added to every response
+     * @param jitterMillis Additional random delay of up to this many millis
+     */
+    public LocalQuoteServer setLatency(long latencyMillis, long jitterMillis) {
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        return this;
+    }
+
+    /**
+     * @param errorRate Fraction of requests (0..1) answered with HTTP 500
+     */
+    public LocalQuoteServer setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    /**
+     * @param maxRequestsPerSecond Requests above this rate get HTTP 429 (0 disables throttling)
+     */
+    public LocalQuoteServer setMaxRequestsPerSecond(int maxRequestsPerSecond) {
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+        return this;
+    }
+
+    /**
+     * @param synthesizeMissing Generate deterministic payloads for unrecorded symbols instead of 404
+     */
+    public LocalQuoteServer setSynthesizeMissing(boolean synthesizeMissing) {
+        this.synthesizeMissing = synthesizeMissing;
+        return this;
+    }
+
+    /**
+     * @param upstreamBaseUrl Fetch and save payloads that are not recorded yet (e.g. the real Yahoo URL)
+     */
+    public LocalQuoteServer setRecordFrom(String upstreamBaseUrl) {
+        this.recordFrom = upstreamBaseUrl;
+        return this;
+    }
+
+    /**
+     * Starts serving on the configured port (0 picks a free one)
+     *
+     * @return Base URL to pass to {@link StockPriceAPI#setBaseUrl}
+     */
+    public String start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        // A pool so injected latency does not serialize concurrent requests
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "local-quote-server");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        return getBaseUrl();
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Requests: %d | Served: %d | Errors: %d | Throttled: %d | Not found: %d",
+                requests.get(), served.get(), injectedErrors.get(), throttled.get(), notFound.get());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            if (isThrottled()) {
+                throttled.incrementAndGet();
+                exchange.getResponseHeaders().add("Retry-After", "1");
+                send(exchange, 429, "{\"finance\":{\"error\":{\"code\":\"Too Many Requests\"}}}");
+                return;
+            }
+
+            delay();
+
+            if (errorRate > 0 && nextDouble() < errorRate) {
+                injectedErrors.incrementAndGet();
+                send(exchange, 500, "{\"finance\":{\"error\":{\"code\":\"Internal Server Error\"}}}");
+                return;
+            }
+
+            URI uri = exchange.getRequestURI();
+            String path = uri.getPath();
+            String body;
+            if (path.startsWith("/v8/finance/chart/") && queryParam(uri, "period1") != null) {
+                body = history(decode(path.substring("/v8/finance/chart/".length())), uri);
+            } else if (path.startsWith("/v8/finance/chart/")) {
+                body = payload("chart", decode(path.substring("/v8/finance/chart/".length())), uri);
+            } else if (path.startsWith("/v1/finance/search")) {
+                body = payload("search", queryParam(uri, "q"), uri);
+            } else if (path.startsWith("/v7/finance/quote")) {
+                body = batchQuote(queryParam(uri, "symbols"));
+            } else {
+                body = null;
+            }
+
+            if (body == null) {
+                notFound.incrementAndGet();
+                send(exchange, 404, "{\"chart\":{\"result\":null,\"error\":{\"code\":\"Not Found\",\"description\":\"No data found\"}}}");
+                return;
+            }
+            served.incrementAndGet();
+            send(exchange, 200, body);
+        } catch (Exception e) {
+            send(exchange, 500, "{\"error\":\"" + e.getClass().getSimpleName() + "\"}");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private synchronized boolean isThrottled() {
+        if (maxRequestsPerSecond <= 0) return false;
+        long now = System.currentTimeMillis();
+        if (now - windowStart >= 1000) {
+            windowStart = now;
+            windowCount = 0;
+        }
+        return ++windowCount > maxRequestsPerSecond;
+    }
+
+    private void delay() throws InterruptedException {
+        long millis = latencyMillis;
+        if (jitterMillis > 0) {
+            millis += (long) (nextDouble() * jitterMillis);
+        }
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+    }
+
+    private synchronized double nextDouble() {
+        return random.nextDouble();
+    }
+
+    /**
+     * Looks up a recorded payload, recording or synthesizing it if missing
+     */
+    private String payload(String kind, String symbol, URI requestUri) throws IOException, InterruptedException {
+        if (symbol == null || symbol.isEmpty()) return null;
+        symbol = symbol.trim().toUpperCase();
+
+        Path file = payloadDir.resolve(kind).resolve(symbol + ".json");
+        if (Files.exists(file)) {
+            return Files.readString(file, StandardCharsets.UTF_8);
+        }
+
+        if (recordFrom != null) {
+            String recorded = fetchUpstream(recordFrom + requestUri);
+            if (recorded != null) {
+                Files.createDirectories(file.getParent());
+                Files.writeString(file, recorded, StandardCharsets.UTF_8);
+                return recorded;
+            }
+        }
+
+        if (!synthesizeMissing) return null;
+        return "chart".equals(kind) ? syntheticChart(symbol) : syntheticSearch(symbol);
+    }
+
+    /**
+     * Looks up a recorded history payload, recording or synthesizing it if missing
+     */
+    private String history(String symbol, URI requestUri) throws IOException, InterruptedException {
+        String interval = queryParam(requestUri, "interval");
+        if (symbol == null || symbol.isEmpty() || interval == null) return null;
+        symbol = symbol.trim().toUpperCase();
+
+        Path file = payloadDir.resolve("history").resolve(symbol + "." + interval + ".json");
+        if (Files.exists(file)) {
+            return Files.readString(file, StandardCharsets.UTF_8);
+        }
+
+        if (recordFrom != null) {
+            String recorded = fetchUpstream(recordFrom + requestUri);
+            if (recorded != null) {
+                Files.createDirectories(file.getParent());
+                Files.writeString(file, recorded, StandardCharsets.UTF_8);
+                return recorded;
+            }
+        }
+
+        if (!synthesizeMissing) return null;
+        long step = intervalSeconds(interval);
+        if (step <= 0) return null;
+        return syntheticHistory(symbol, interval, step,
+                Long.parseLong(queryParam(requestUri, "period1")), Long.parseLong(queryParam(requestUri, "period2")));
+    }
+
+    private String batchQuote(String symbols) throws IOException, InterruptedException {
+        if (symbols == null) return null;
+
+        StringBuilder json = new StringBuilder("{\"quoteResponse\":{\"result\":[");
+        boolean first = true;
+        for (String symbol : symbols.split(",")) {
+            String chart = payload("chart", symbol, URI.create("/v8/finance/chart/" + symbol.trim() + "?interval=1d&range=1d"));
+            if (chart == null) continue;
+
+            String[] meta;
+            synchronized (chartMeta) {
+                meta = chartMeta.extractFirst(new ByteArrayInputStream(chart.getBytes(StandardCharsets.UTF_8)));
+            }
+            if (meta[0] == null) continue;
+
+            if (!first) json.append(',');
+            first = false;
+            json.append("{\"language\":\"en-US\",\"quoteType\":\"EQUITY\"")
+                .append(",\"currency\":\"").append(meta[2] != null ? meta[2] : "INR").append('"')
+                .append(",\"regularMarketPrice\":").append(meta[0])
+                .append(",\"regularMarketPreviousClose\":").append(meta[1] != null ? meta[1] : meta[0])
+                .append(",\"regularMarketTime\":").append(meta[3] != null ? meta[3] : "0")
+                .append(",\"symbol\":\"").append(symbol.trim().toUpperCase()).append("\"}");
+        }
+        json.append("],\"error\":null}}");
+        return json.toString();
+    }
+
+    // Deterministic price derived from the symbol so repeated runs match
+    private String syntheticChart(String symbol) {
+        long seed = symbol.hashCode() & 0x7fffffffL;
+        double price = 50 + (seed % 500000) / 100.0;
+        double previousClose = Math.round(price * (1 - ((seed % 600) - 300) / 10000.0) * 100) / 100.0;
+        long time = System.currentTimeMillis() / 1000;
+        String currency = symbol.endsWith(".NS") || symbol.endsWith(".BO") ? "INR" : "USD";
+        return "{\"chart\":{\"result\":[{\"meta\":{\"currency\":\"" + currency + "\",\"symbol\":\"" + symbol + "\""
+                + ",\"instrumentType\":\"EQUITY\",\"regularMarketTime\":" + time
+                + ",\"regularMarketPrice\":" + price + ",\"chartPreviousClose\":" + previousClose
+                + ",\"previousClose\":" + previousClose + ",\"dataGranularity\":\"1d\",\"range\":\"1d\"}"
+                + ",\"timestamp\":[" + time + "],\"indicators\":{\"quote\":[{\"close\":[" + price + "]}]}}],\"error\":null}}";
+    }
+
+    // Weekday bars around the synthetic chart price; a bar's price depends only on its time
+    private String syntheticHistory(String symbol, String interval, long step, long period1, long period2) {
+        long seed = symbol.hashCode() & 0x7fffffffL;
+        double base = 50 + (seed % 500000) / 100.0;
+        StringBuilder timestamps = new StringBuilder();
+        StringBuilder closes = new StringBuilder();
+        int bars = 0;
+        for (long time = Math.floorDiv(period1 + step - 1, step) * step; time < period2 && bars < 100000; time += step) {
+            long dayOfWeek = Math.floorMod(Math.floorDiv(time, 86400) + 4, 7); // 0 = Sunday
+            if (dayOfWeek == 0 || dayOfWeek == 6) continue;
+
+            double noise = new Random(seed * 31 + time).nextDouble() - 0.5;
+            double price = Math.round(base * (1 + 0.2 * Math.sin(time / (86400.0 * 90)) + 0.02 * noise) * 100) / 100.0;
+            if (bars++ > 0) {
+                timestamps.append(',');
+                closes.append(',');
+            }
+            timestamps.append(time);
+            closes.append(price);
+        }
+        String currency = symbol.endsWith(".NS") || symbol.endsWith(".BO") ? "INR" : "USD";
+        return "{\"chart\":{\"result\":[{\"meta\":{\"currency\":\"" + currency + "\",\"symbol\":\"" + symbol + "\""
+                + ",\"instrumentType\":\"EQUITY\",\"dataGranularity\":\"" + interval + "\"}"
+                + ",\"timestamp\":[" + timestamps + "],\"indicators\":{\"quote\":[{\"close\":[" + closes + "]}]}}],\"error\":null}}";
+    }
+
+    // Seconds per bar for intervals such as "5m", "1h" or "1d"; 0 if not understood
+    private static long intervalSeconds(String interval) {
+        try {
+            long count = Long.parseLong(interval.substring(0, interval.length() - 1));
+            switch (interval.charAt(interval.length() - 1)) {
+                case 'm': return count * 60;
+                case 'h': return count * 3600;
+                case 'd': return count * 86400;
+                default: return 0;
+            }
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
+    private String syntheticSearch(String symbol) {
+        String base = symbol.contains(".") ? symbol.substring(0, symbol.indexOf('.')) : symbol;
+        return "{\"explains\":[],\"count\":1,\"quotes\":[{\"exchange\":\"NSI\",\"shortname\":\"" + base + " LTD\""
+                + ",\"quoteType\":\"EQUITY\",\"symbol\":\"" + symbol + "\",\"longname\":\"" + base + " Limited\"}]"
+                + ",\"news\":[]}";
+    }
+
+    private String fetchUpstream(String url) throws IOException, InterruptedException {
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(url))
+                .header("User-Agent", "Mozilla/5.0").timeout(Duration.ofSeconds(10)).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        return response.statusCode() == 200 ? response.body() : null;
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(bytes);
+            }
+            bytes = compressed.toByteArray();
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+        }
+        exchange.getResponseHeaders().add("Content-Type", "application/json;charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String queryParam(URI uri, String name) {
+        String query = uri.getRawQuery();
+        if (query == null) return null;
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0 && pair.substring(0, eq).equals(name)) {
+                return decode(pair.substring(eq + 1));
+            }
+        }
+        return null;
+    }
+
+    private static String decode(String value) {
+        return URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+
+    public static void main(String[] args) throws Exception {
+        LocalQuoteServer quoteServer = new LocalQuoteServer();
+        long latency = 0;
+        long jitter = 0;
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            String value = i + 1 < args.length ? args[i + 1] : null;
+            switch (arg) {
+                case "--port": quoteServer.setPort(Integer.parseInt(value)); i++; break;
+                case "--payloads": quoteServer.setPayloadDir(Paths.get(value)); i++; break;
+                case "--latency": latency = Long.parseLong(value); i++; break;
+                case "--jitter": jitter = Long.parseLong(value); i++; break;
+                case "--error-rate": quoteServer.setErrorRate(Double.parseDouble(value)); i++; break;
+                case "--rps": quoteServer.setMaxRequestsPerSecond(Integer.parseInt(value)); i++; break;
+                case "--record": quoteServer.setRecordFrom(value); i++; break;
+                case "--no-synthetic": quoteServer.setSynthesizeMissing(false); break;
+                default:
+                    System.err.println("Unknown option: " + arg);
+                    System.err.println("Options: --port N --payloads DIR --latency MS --jitter MS --error-rate F --rps N --record URL --no-synthetic");
+                    System.exit(1);
+            }
+        }
+        quoteServer.setLatency(latency, jitter);
+
+        String url = quoteServer.start();
+        System.out.println("Local quote server listening on " + url);
+        System.out.println("Run the app with -Dstockapi.baseUrl=" + url);
+
+        // Print counters every 10 seconds until killed
+        while (true) {
+            Thread.sleep(10000);
+            System.out.println(quoteServer);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+/**
+ * Fast path for large broker exports. The file is cut into chunks at
+ * record boundaries; the chunks are read, decoded and parsed in parallel
+ * on a fork-join pool and handed to the sink in file order, on
+ * the calling thread. Rows, errors and line numbers come out exactly as
+ * from {@link PortfolioImporter#importTo}, which small files (and files
+ * that cannot be split safely) simply go through.
+ *
+ * Finding the boundaries takes one sequential pass over the bytes, since a
+ * line break inside a quoted field does not end a record; it runs ahead of
+ * the parsing, cutting the next chunk while earlier ones are parsed.
+ *
+ * Only a bounded number of parsed chunks is held at a time, so memory use
+ * stays proportional to the chunk size times the pool's parallelism.
+ * Chunks are read into heap buffers rather than mapped: a mapping lives
+ * until it is garbage collected, and on Windows keeps the file locked
+ * against being deleted or overwritten after the import.
+ */
+public class ParallelImporter {
+
+    public static final int DEFAULT_CHUNK_BYTES = 4 << 20;
+
+    private final ForkJoinPool pool;
+    private final int chunkBytes;
+
+    // Rows of one chunk, plus the errors found between them
+    private static class Chunk {
+        final List<Stock> stocks = new ArrayList<>();
+        final List<ChunkError> errors = new ArrayList<>();
+        long rows;
+        long lines;
+        long skipped;
+    }
+
+    private static class ChunkError {
+        final long line;        // Line within the chunk where the row starts, from 1
+        final int stocksBefore; // Stocks of the chunk that precede it
+        final String text;
+        final RuntimeException cause;
+
+        ChunkError(long line, int stocksBefore, String text, RuntimeException cause) {
+            this.line = line;
+            this.stocksBefore = stocksBefore;
+            this.text = text;
+            this.cause = cause;
+        }
+    }
+
+    public ParallelImporter() {
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_BYTES);
+    }
+
+    /**
+     * @param pool Pool the chunks are parsed on
+     * @param chunkBytes Approximate bytes per chunk; files under two chunks are read sequentially
+     */
+    public ParallelImporter(ForkJoinPool pool, int chunkBytes) {
+        if (chunkBytes <= 0) {
+            throw new IllegalArgumentException("chunkBytes must be positive");
+        }
+        this.pool = pool;
+        this.chunkBytes = chunkBytes;
+    }
+
+    /**
+     * @see PortfolioImporter#importTo(Path, PortfolioImporter.RowMapper, Consumer)
+     */
+    public PortfolioImporter.ImportResult importTo(Path file, PortfolioImporter.RowMapper mapper,
+                                                   Consumer<Stock> sink) throws IOException {
+        return importTo(file, mapper, sink, null);
+    }
+
+    /**
+     * Same contract as {@link PortfolioImporter#importTo(Path, PortfolioImporter.RowMapper, Consumer, Consumer)};
+     * the sinks are called on the calling thread, in file order
+     */
+    public PortfolioImporter.ImportResult importTo(Path file, PortfolioImporter.RowMapper mapper,
+                                                   Consumer<Stock> sink, Consumer<PortfolioImporter.ImportError> errorSink) throws IOException {
+        // Same decoding as the FileReader of the sequential path
+        Charset charset = Charset.defaultCharset();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 2L * chunkBytes || !splittable(charset)) {
+                return PortfolioImporter.importTo(file, mapper, sink, errorSink);
+            }
+            return importChunks(channel, charset, new Chunker(channel, size), mapper, sink, errorSink);
+        }
+    }
+
+    private PortfolioImporter.ImportResult importChunks(FileChannel channel, Charset charset, Chunker chunks,
+                                                        PortfolioImporter.RowMapper mapper, Consumer<Stock> sink,
+                                                        Consumer<PortfolioImporter.ImportError> errorSink) throws IOException {
+        List<PortfolioImporter.ImportError> errors = new ArrayList<>();
+        long linesBefore = 0;
+        long rows = 0;
+        long imported = 0;
+        long skipped = 0;
+        long errorCount = 0;
+
+        // Keep a few chunks ahead of the one being delivered
+        int window = Math.max(2, pool.getParallelism() * 2);
+        ArrayDeque<ForkJoinTask<Chunk>> inFlight = new ArrayDeque<>();
+        try {
+            while (chunks.hasNext() || !inFlight.isEmpty()) {
+                while (chunks.hasNext() && inFlight.size() < window) {
+                    long[] range = chunks.next();
+                    inFlight.add(pool.submit(() -> parse(channel, charset, range[0], range[1], mapper)));
+                }
+                Chunk chunk = join(inFlight.poll());
+
+                int error = 0;
+                for (int i = 0; i <= chunk.stocks.size(); i++) {
+                    while (error < chunk.errors.size() && chunk.errors.get(error).stocksBefore == i) {
+                        ChunkError e = chunk.errors.get(error++);
+                        PortfolioImporter.ImportError importError =
+                                new PortfolioImporter.ImportError(linesBefore + e.line, e.text, e.cause);
+                        errorCount++;
+                        if (errors.size() < PortfolioImporter.MAX_REPORTED_ERRORS) {
+                            errors.add(importError);
+                        }
+                        if (errorSink != null) {
+                            errorSink.accept(importError);
+                        }
+                    }
+                    if (i < chunk.stocks.size()) {
+                        sink.accept(chunk.stocks.get(i));
+                        imported++;
+                    }
+                }
+                rows += chunk.rows;
+                skipped += chunk.skipped;
+                linesBefore += chunk.lines;
+            }
+        } finally {
+            for (ForkJoinTask<Chunk> task : inFlight) {
+                task.cancel(true);
+            }
+        }
+        return new PortfolioImporter.ImportResult(rows, imported, skipped, errorCount, errors);
+    }
+
+    // Runs on the pool
+    private static Chunk parse(FileChannel channel, Charset charset, long start, long end,
+                               PortfolioImporter.RowMapper mapper) {
+        ByteBuffer bytes = ByteBuffer.allocate((int) (end - start));
+        try {
+            while (bytes.hasRemaining()) {
+                if (channel.read(bytes, start + bytes.position()) < 0) {
+                    throw new EOFException("File shrank while importing");
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        bytes.flip();
+        CharBuffer chars = charset.decode(bytes);
+        char[] text = chars.array();
+        int limit = chars.arrayOffset() + chars.limit();
+
+        // Chunks end on a record boundary, so each one tokenizes on its own
+        CsvTokenizer tokenizer = new CsvTokenizer();
+        Chunk chunk = new Chunk();
+        int i = chars.arrayOffset();
+        if (start == 0 && i < limit) {
+            i = tokenizer.next(text, i, limit, true); // Skip header
+            chunk.lines += tokenizer.getLineCount();
+        }
+        while (i < limit) {
+            i = tokenizer.next(text, i, limit, true);
+            chunk.rows++;
+            try {
+                Stock stock = mapper.map(tokenizer);
+                if (stock != null) {
+                    chunk.stocks.add(stock);
+                } else {
+                    chunk.skipped++;
+                }
+            } catch (RuntimeException e) {
+                chunk.errors.add(new ChunkError(chunk.lines + 1, chunk.stocks.size(), tokenizer.getRecord(), e));
+            }
+            chunk.lines += tokenizer.getLineCount();
+        }
+        return chunk;
+    }
+
+    private static Chunk join(ForkJoinTask<Chunk> task) throws IOException {
+        try {
+            return task.join();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (RuntimeException e) {
+            // join may rethrow a copy that wraps the original
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Cuts a file into chunks of about chunkBytes that end just after the
+     * '\n' of a record. Quotes are tracked from the start of the file, so a
+     * line break inside a quoted field never ends a chunk.
+     */
+    private class Chunker {
+        private final FileChannel channel;
+        private final long size;
+        private final CsvTokenizer.RecordScanner scanner = new CsvTokenizer.RecordScanner(',');
+        private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        private long scanned; // Bytes fed to the scanner
+        private long start;
+
+        Chunker(FileChannel channel, long size) {
+            this.channel = channel;
+            this.size = size;
+        }
+
+        boolean hasNext() {
+            return start < size;
+        }
+
+        long[] next() throws IOException {
+            long end = start + chunkBytes >= size ? size : recordEnd(start + chunkBytes);
+            long[] chunk = {start, end};
+            start = end;
+            return chunk;
+        }
+
+        // First record boundary at or after the target, or the end of the file
+        private long recordEnd(long target) throws IOException {
+            while (scanned < size) {
+                buffer.clear();
+                int read = channel.read(buffer, scanned);
+                if (read <= 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (scanner.feed(buffer.get(i)) && scanned + i + 1 >= target) {
+                        scanned += i + 1;
+                        return scanned;
+                    }
+                }
+                scanned += read;
+            }
+            return size;
+        }
+    }
+
+    // Chunks can only be cut in the byte stream if the charset encodes the characters the tokenizer looks for as single bytes
+    private static boolean splittable(Charset charset) {
+        return charset.canEncode() && Arrays.equals("\n\r,\"".getBytes(charset), new byte[] {'\n', '\r', ',', '"'});
+    }
+}
@@ -1,64 +1,189 @@
 import java.io.*;
+import java.nio.file.Paths;
 import java.util.*;
 
 public class Portfolio implements Serializable {
     private static final long serialVersionUID = 1L;
     
-    private ArrayList<Stock> stocks;
+    // The serialized form is still the list of Stock objects it was before
+    // positions moved into columns, so existing portfolio files load as-is
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("stocks", ArrayList.class),
+        new ObjectStreamField("portfolioName", String.class)
+    };
+    
+    // Positions in columnar form; totals are kept current by the table
+    private transient HoldingsTable holdings;
     private String portfolioName;
     
+    // Write-ahead journal of changes, if attached (see PortfolioJournal)
+    private transient PortfolioJournal journal;
+    private transient long journalSequence;
+    
+    // Changes outside the holdings table (see getModCount)
+    private transient long modCount;
+    
+    // Change notification, if attached (see PortfolioEvents)
+    private transient PortfolioEvents events;
+    
     public Portfolio(String portfolioName) {
         this.portfolioName = portfolioName;
-        this.stocks = new ArrayList<>();
+        this.holdings = new HoldingsTable();
     }
     
-    // Add stock
+    // Add stock; a symbol already held is merged into the existing position.
+    // The values are copied into the portfolio - use findStock for a live handle.
     public void addStock(Stock stock) {
-        stocks.add(stock);
+        boolean held = events != null && holdings.find(stock.getSymbol()) >= 0;
+        addPosition(stock);
+        if (journal != null) {
+            journal.recordAdd(stock.getName(), stock.getSymbol(), stock.getQuantity(),
+                    stock.getBuyPrice(), stock.getCurrentPrice());
+        }
+        if (events != null) {
+            events.post(held ? PortfolioEvents.Type.POSITION_CHANGED : PortfolioEvents.Type.POSITION_ADDED,
+                    stock.getSymbol());
+        }
+        assert checkTotals() : "Running totals out of sync after addStock";
+    }
+    
+    // Adds several stocks, as addStock would one after the other
+    public void addStocks(Collection<? extends Stock> stocks) {
+        for (Stock stock : stocks) {
+            addStock(stock);
+        }
+    }
+    
+    // Used by PortfolioFile when loading; merges like addStock but awards nothing
+    void restorePosition(String name, String symbol, int quantity, double buyPrice, double currentPrice) {
+        int id = holdings.find(symbol);
+        if (id >= 0) {
+            holdings.merge(id, quantity, buyPrice, currentPrice);
+        } else {
+            holdings.insert(name, symbol, quantity, buyPrice, currentPrice);
+        }
+    }
+    
+    private void addPosition(Stock stock) {
+        restorePosition(stock.getName(), stock.getSymbol(), stock.getQuantity(),
+                stock.getBuyPrice(), stock.getCurrentPrice());
     }
     
     // Remove stock
     public boolean removeStock(String symbol) {
-        return stocks.removeIf(stock -> stock.getSymbol().equalsIgnoreCase(symbol));
+        int id = holdings.find(symbol);
+        if (id < 0) {
+            return false;
+        }
+        holdings.remove(id);
+        if (journal != null) {
+            journal.recordRemove(symbol);
+        }
+        if (events != null) {
+            events.post(PortfolioEvents.Type.POSITION_REMOVED, symbol);
+        }
+        assert checkTotals() : "Running totals out of sync after removeStock";
+        return true;
     }
     
-    // Get all stocks
-    public ArrayList<Stock> getStocks() {
-        return new ArrayList<>(stocks);
+    /**
+     * Sets the current price of the position with the given symbol
+     *
+     * @param symbol Stock symbol (case-insensitive)
+     * @param price New current price
+     * @return false if no position has that symbol
+     */
+    public boolean updatePrice(String symbol, double price) {
+        int id = holdings.find(symbol);
+        if (id < 0) {
+            return false;
+        }
+        holdings.setCurrentPrice(id, price);
+        return true;
     }
     
-    // Find stock by symbol
-    public Stock findStock(String symbol) {
-        for (Stock stock : stocks) {
-            if (stock.getSymbol().equalsIgnoreCase(symbol)) {
-                return stock;
+    /**
+     * Revalues many positions at once
+     *
+     * @param prices Symbol to new current price
+     * @return Number of positions updated
+     */
+    public int updatePrices(Map<String, Double> prices) {
+        int updated = 0;
+        for (Map.Entry<String, Double> entry : prices.entrySet()) {
+            int id = holdings.find(entry.getKey());
+            if (id >= 0 && entry.getValue() != null) {
+                holdings.setCurrentPrice(id, entry.getValue());
+                updated++;
             }
         }
-        return null;
+        assert checkTotals() : "Running totals out of sync after updatePrices";
+        return updated;
+    }
+    
+    /**
+     * Live, read-only view of the positions in display order. No copy is
+     * made; copy the list before handing it to another thread.
+     */
+    public List<Stock> getStocks() {
+        return holdings.asList();
+    }
+    
+    // Symbols of all positions in display order, without creating Stock handles
+    public List<String> getSymbols() {
+        List<String> symbols = new ArrayList<>(holdings.size());
+        for (int row = 0; row < holdings.size(); row++) {
+            symbols.add(holdings.symbolAt(row));
+        }
+        return symbols;
+    }
+    
+    // Find stock by symbol
+    public Stock findStock(String symbol) {
+        int id = holdings.find(symbol);
+        return id >= 0 ? holdings.handle(id) : null;
     }
     
     // Sort by name
     public void sortByName() {
-        stocks.sort(Comparator.comparing(Stock::getName));
+        holdings.sortByName();
+        if (journal != null) {
+            journal.recordSort(PortfolioJournal.SORT_BY_NAME);
+        }
+        postReordered();
     }
     
     // Sort by profit
     public void sortByProfit() {
-        stocks.sort(Comparator.comparingDouble(Stock::getProfit).reversed());
+        holdings.sortByProfit();
+        if (journal != null) {
+            journal.recordSort(PortfolioJournal.SORT_BY_PROFIT);
+        }
+        postReordered();
     }
     
     // Sort by value
     public void sortByValue() {
-        stocks.sort(Comparator.comparingDouble(Stock::getTotalValue).reversed());
+        holdings.sortByValue();
+        if (journal != null) {
+            journal.recordSort(PortfolioJournal.SORT_BY_VALUE);
+        }
+        postReordered();
+    }
+    
+    private void postReordered() {
+        if (events != null) {
+            events.post(PortfolioEvents.Type.POSITIONS_REORDERED, null);
+        }
     }
     
     // Portfolio statistics
     public double getTotalInvestment() {
-        return stocks.stream().mapToDouble(Stock::getTotalInvestment).sum();
+        return holdings.getTotalInvestment();
     }
     
     public double getTotalValue() {
-        return stocks.stream().mapToDouble(Stock::getTotalValue).sum();
+        return holdings.getTotalValue();
     }
     
     public double getTotalProfit() {
@@ -66,29 +191,142 @@ public class Portfolio implements Serializable {
     }
     
     public double getTotalProfitPercentage() {
-        if (getTotalInvestment() == 0) return 0;
-        return (getTotalProfit() / getTotalInvestment()) * 100;
+        double investment = getTotalInvestment();
+        if (investment == 0) return 0;
+        return ((getTotalValue() - investment) / investment) * 100;
     }
     
-    // File operations
-    public void saveToFile(String filename) throws IOException {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(filename))) {
-            oos.writeObject(this);
+    /**
+     * Compares the running totals against a full recompute over all positions.
+     * Used in assertions (run with -ea).
+     *
+     * @return true if the running totals match
+     */
+    boolean checkTotals() {
+        return holdings.checkTotals();
+    }
+    
+    /**
+     * Counter for detecting changes, e.g. to skip saving an unchanged
+     * portfolio. It only ever grows; equal values mean nothing changed.
+     *
+     * @return Modification count
+     */
+    public long getModCount() {
+        return holdings.getModCount() + modCount;
+    }
+    
+    // For subclass state the holdings table does not see
+    void markModified() {
+        modCount++;
+    }
+    
+    HoldingsTable getHoldings() {
+        return holdings;
+    }
+    
+    // Attached by PortfolioJournal once recovery is done; null detaches
+    void setJournal(PortfolioJournal journal) {
+        this.journal = journal;
+        updateChangeListener();
+    }
+    
+    // Attached by PortfolioEvents; null detaches
+    void setEvents(PortfolioEvents events) {
+        this.events = events;
+        updateChangeListener();
+    }
+    
+    PortfolioEvents getEvents() {
+        return events;
+    }
+    
+    // The holdings table reports edits (including those made through Stock
+    // handles) to one listener; with events attached it goes through here
+    private void updateChangeListener() {
+        if (events == null) {
+            holdings.setChangeListener(journal);
+            return;
         }
+        holdings.setChangeListener(new HoldingsTable.ChangeListener() {
+            @Override
+            public void quantityChanged(String symbol, int quantity) {
+                if (journal != null) {
+                    journal.quantityChanged(symbol, quantity);
+                }
+                if (events != null) {
+                    events.post(PortfolioEvents.Type.POSITION_CHANGED, symbol);
+                }
+            }
+            
+            @Override
+            public void priceChanged(String symbol, double price) {
+                if (journal != null) {
+                    journal.priceChanged(symbol, price);
+                }
+                if (events != null) {
+                    events.post(PortfolioEvents.Type.POSITION_REPRICED, symbol);
+                }
+            }
+        });
+    }
+    
+    PortfolioJournal getJournal() {
+        return journal;
+    }
+    
+    /**
+     * @return Last journal record reflected in this portfolio, 0 if none
+     */
+    long getJournalSequence() {
+        return journal != null ? journal.getLastSequence() : journalSequence;
+    }
+    
+    void setJournalSequence(long journalSequence) {
+        this.journalSequence = journalSequence;
     }
     
-    public static Portfolio loadFromFile(String filename) throws IOException, ClassNotFoundException {
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(filename))) {
-            return (Portfolio) ois.readObject();
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("stocks", holdings.toStocks());
+        fields.put("portfolioName", portfolioName);
+        out.writeFields();
+    }
+    
+    // Loads the positions into columns. Files written before positions were
+    // merged may hold a symbol twice; those are merged.
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        portfolioName = (String) fields.get("portfolioName", null);
+        holdings = new HoldingsTable();
+        ArrayList<Stock> loaded = (ArrayList<Stock>) fields.get("stocks", null);
+        if (loaded != null) {
+            for (Stock stock : loaded) {
+                addPosition(stock); // Not addStock - subclasses award XP there
+            }
         }
     }
     
+    // File operations (see PortfolioFile for the format)
+    public void saveToFile(String filename) throws IOException {
+        PortfolioFile.write(this, Paths.get(filename));
+    }
+    
+    // Reads both the current format and files written by older versions,
+    // plus any changes journaled since the file was written
+    public static Portfolio loadFromFile(String filename) throws IOException {
+        Portfolio portfolio = PortfolioFile.read(Paths.get(filename));
+        PortfolioJournal.replay(portfolio, PortfolioJournal.journalFileFor(Paths.get(filename)));
+        return portfolio;
+    }
+    
     public String getPortfolioName() {
         return portfolioName;
     }
     
     public int getStockCount() {
-        return stocks.size();
+        return holdings.size();
     }
 }
 
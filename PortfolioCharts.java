@@ -0,0 +1,271 @@
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.Paint;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.swing.JFrame;
+import javax.swing.Timer;
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.ChartPanel;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.plot.PlotOrientation;
+import org.jfree.chart.renderer.category.BarRenderer;
+import org.jfree.data.category.DefaultCategoryDataset;
+import org.jfree.data.general.AbstractDataset;
+import org.jfree.data.general.DefaultPieDataset;
+
+/**
+ * Live pie (value per stock) and bar (profit per stock) charts of a
+ * portfolio. Each chart has one window, reused when it is opened again,
+ * and one dataset that follows the portfolio through
+ * {@link PortfolioEvents} for as long as the window is open.
+ *
+ * A repriced or changed position updates only its own slice or bar.
+ * Added, removed or reordered positions re-sync the keys, rebuilding only
+ * if the order no longer matches. Datasets do not notify their charts on
+ * every value; a redraw is published at most every
+ * {@link #REDRAW_INTERVAL_MILLIS}, so a refresh of hundreds of prices
+ * redraws a 500-slice chart a handful of times rather than once per price.
+ *
+ * This is the only class that touches JFreeChart, so the library is loaded
+ * when the first chart is opened. Must only be used on the event thread.
+ */
+public class PortfolioCharts {
+
+    public static final int REDRAW_INTERVAL_MILLIS = 250;
+
+    private static final String PROFIT_ROW = "Profit/Loss";
+
+    private final Portfolio portfolio;
+    private final PortfolioEvents events;
+    private final PortfolioEvents.Listener listener = this::portfolioChanged;
+    private final Color gainColor;
+    private final Color lossColor;
+    private final Timer redrawTimer;
+    private long lastRedraw;
+
+    // Non-null while the chart's window is open
+    private DefaultPieDataset<String> pieDataset;
+    private JFrame pieFrame;
+    private DefaultCategoryDataset barDataset;
+    private JFrame barFrame;
+
+    public PortfolioCharts(Portfolio portfolio, PortfolioEvents events, Color gainColor, Color lossColor) {
+        this.portfolio = portfolio;
+        this.events = events;
+        this.gainColor = gainColor;
+        this.lossColor = lossColor;
+        this.redrawTimer = new Timer(REDRAW_INTERVAL_MILLIS, e -> redraw());
+        redrawTimer.setRepeats(false);
+        events.addListener(listener, PortfolioEvents.POSITIONS);
+    }
+
+    /**
+     * Opens the value-per-stock pie chart, or brings it to the front if it is open
+     */
+    public void showPieChart(Component parent) {
+        if (pieFrame != null) {
+            pieFrame.toFront();
+            return;
+        }
+        pieDataset = new DefaultPieDataset<>();
+        pieDataset.setNotify(false);
+        syncKeys();
+
+        JFreeChart chart = ChartFactory.createPieChart(
+            "Portfolio Distribution by Value",
+            pieDataset,
+            true, true, false
+        );
+        pieFrame = openFrame("Portfolio Pie Chart", chart, new Dimension(600, 400), parent, () -> {
+            pieFrame = null;
+            pieDataset = null;
+        });
+    }
+
+    /**
+     * Opens the profit-per-stock bar chart, or brings it to the front if it is open
+     */
+    public void showBarChart(Component parent) {
+        if (barFrame != null) {
+            barFrame.toFront();
+            return;
+        }
+        barDataset = new DefaultCategoryDataset();
+        barDataset.setNotify(false);
+        syncKeys();
+
+        JFreeChart chart = ChartFactory.createBarChart(
+            "Profit/Loss per Stock",
+            "Stock Symbol",
+            "Profit/Loss (₹)",
+            barDataset,
+            PlotOrientation.VERTICAL,
+            false,
+            true,
+            false
+        );
+        // Each bar is coloured by its own sign
+        chart.getCategoryPlot().setRenderer(new BarRenderer() {
+            @Override
+            public Paint getItemPaint(int row, int column) {
+                Number value = getPlot().getDataset().getValue(row, column);
+                return value != null && value.doubleValue() < 0 ? lossColor : gainColor;
+            }
+        });
+        barFrame = openFrame("Profit/Loss Bar Chart", chart, new Dimension(800, 500), parent, () -> {
+            barFrame = null;
+            barDataset = null;
+        });
+    }
+
+    /**
+     * Closes the chart windows and stops following the portfolio
+     */
+    public void close() {
+        events.removeListener(listener);
+        redrawTimer.stop();
+        if (pieFrame != null) {
+            pieFrame.dispose();
+        }
+        if (barFrame != null) {
+            barFrame.dispose();
+        }
+    }
+
+    private JFrame openFrame(String title, JFreeChart chart, Dimension size, Component parent, Runnable onClose) {
+        ChartPanel chartPanel = new ChartPanel(chart);
+        chartPanel.setPreferredSize(size);
+
+        JFrame frame = new JFrame(title);
+        frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        frame.add(chartPanel);
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                onClose.run();
+            }
+        });
+        frame.pack();
+        frame.setLocationRelativeTo(parent);
+        frame.setVisible(true);
+        return frame;
+    }
+
+    private void portfolioChanged(PortfolioEvents.Batch batch) {
+        if (pieDataset == null && barDataset == null) {
+            return;
+        }
+        if (batch.contains(PortfolioEvents.Type.POSITION_ADDED)
+                || batch.contains(PortfolioEvents.Type.POSITION_REMOVED)
+                || batch.contains(PortfolioEvents.Type.POSITIONS_REORDERED)) {
+            syncKeys();
+        }
+        updateValues(batch.get(PortfolioEvents.Type.POSITION_REPRICED));
+        updateValues(batch.get(PortfolioEvents.Type.POSITION_CHANGED));
+        redrawSoon();
+    }
+
+    // Sets the values of the given symbols only
+    private void updateValues(Set<String> symbols) {
+        for (String symbol : symbols) {
+            Stock stock = portfolio.findStock(symbol);
+            if (stock != null) {
+                setValues(stock);
+            }
+        }
+    }
+
+    private void setValues(Stock stock) {
+        if (pieDataset != null) {
+            pieDataset.setValue(stock.getSymbol(), stock.getTotalValue());
+        }
+        if (barDataset != null) {
+            barDataset.setValue(stock.getProfit(), PROFIT_ROW, stock.getSymbol());
+        }
+    }
+
+    // Makes the datasets' keys match the portfolio's positions, in order
+    private void syncKeys() {
+        List<String> symbols = portfolio.getSymbols();
+        Set<String> held = new HashSet<>(symbols);
+        if (pieDataset != null) {
+            List<String> keys = pieDataset.getKeys();
+            for (int i = keys.size() - 1; i >= 0; i--) {
+                if (!held.contains(keys.get(i))) {
+                    pieDataset.remove(keys.get(i));
+                }
+            }
+            if (!isPrefix(pieDataset.getKeys(), symbols)) {
+                pieDataset.clear();
+            }
+        }
+        if (barDataset != null) {
+            @SuppressWarnings("unchecked")
+            List<String> keys = barDataset.getColumnKeys();
+            for (int i = keys.size() - 1; i >= 0; i--) {
+                if (!held.contains(keys.get(i))) {
+                    barDataset.removeColumn(keys.get(i));
+                }
+            }
+            if (!isPrefix(barDataset.getColumnKeys(), symbols)) {
+                barDataset.clear();
+            }
+        }
+
+        // Positions not charted yet, now all at the end of their dataset
+        int pieCount = pieDataset != null ? pieDataset.getItemCount() : symbols.size();
+        int barCount = barDataset != null ? barDataset.getColumnCount() : symbols.size();
+        for (int i = Math.min(pieCount, barCount); i < symbols.size(); i++) {
+            Stock stock = portfolio.getStocks().get(i);
+            if (pieDataset != null && i >= pieCount) {
+                pieDataset.setValue(stock.getSymbol(), stock.getTotalValue());
+            }
+            if (barDataset != null && i >= barCount) {
+                barDataset.setValue(stock.getProfit(), PROFIT_ROW, stock.getSymbol());
+            }
+        }
+    }
+
+    private static boolean isPrefix(List<?> keys, List<String> symbols) {
+        if (keys.size() > symbols.size()) {
+            return false;
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            if (!keys.get(i).equals(symbols.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Publishes now if the last redraw was long enough ago, otherwise once the interval is up
+    private void redrawSoon() {
+        long sinceLast = System.currentTimeMillis() - lastRedraw;
+        if (sinceLast >= REDRAW_INTERVAL_MILLIS) {
+            redrawTimer.stop();
+            redraw();
+        } else if (!redrawTimer.isRunning()) {
+            redrawTimer.setInitialDelay((int) (REDRAW_INTERVAL_MILLIS - sinceLast));
+            redrawTimer.start();
+        }
+    }
+
+    // One change event per open chart, covering everything set since the last one
+    private void redraw() {
+        lastRedraw = System.currentTimeMillis();
+        publish(pieDataset);
+        publish(barDataset);
+    }
+
+    private static void publish(AbstractDataset dataset) {
+        if (dataset != null) {
+            dataset.setNotify(true); // Fires the change event
+            dataset.setNotify(false);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * Change notification for a portfolio. Once attached, the portfolio posts
+ * an event for every position added, removed, changed, revalued or
+ * reordered, and (for a {@link GamifiedPortfolio}) for XP, stats and
+ * unlocked achievements.
+ *
+ * Events are not delivered one by one. The first event after a delivery
+ * schedules the next one on the dispatcher (SwingUtilities::invokeLater in
+ * the GUI); everything posted until it runs is merged into one
+ * {@link Batch}. A price refresh of fifty positions therefore reaches the
+ * screen as one batch, and each listener only hears about the kinds of
+ * change it registered for.
+ *
+ * A batch says what changed, not the values: listeners read the current
+ * state from the portfolio. Events may be posted from any thread; with a
+ * synchronous dispatcher (Runnable::run) every event is its own batch.
+ */
+public class PortfolioEvents {
+
+    public enum Type {
+        POSITION_ADDED,
+        POSITION_REMOVED,
+        POSITION_CHANGED,    // Quantity or buy price, e.g. a merged holding
+        POSITION_REPRICED,   // Current price
+        POSITIONS_REORDERED,
+        EXPERIENCE_CHANGED,  // Including level
+        STATS_CHANGED,
+        ACHIEVEMENT_UNLOCKED
+    }
+
+    // Everything that affects the positions, their totals or their order
+    public static final Set<Type> POSITIONS = Collections.unmodifiableSet(EnumSet.of(
+            Type.POSITION_ADDED, Type.POSITION_REMOVED, Type.POSITION_CHANGED,
+            Type.POSITION_REPRICED, Type.POSITIONS_REORDERED));
+
+    /**
+     * Receives batches of changes on the dispatcher
+     */
+    public interface Listener {
+        void portfolioChanged(Batch batch);
+    }
+
+    /**
+     * Changes posted between two deliveries. Per type it holds the symbols
+     * (or achievement names) involved, each once, in the order first posted.
+     */
+    public static final class Batch {
+        private final Map<Type, Set<String>> subjects = new EnumMap<>(Type.class);
+        private int eventCount;
+
+        private void add(Type type, String subject) {
+            Set<String> set = subjects.computeIfAbsent(type, t -> new LinkedHashSet<>());
+            if (subject != null) {
+                set.add(subject);
+            }
+            eventCount++;
+        }
+
+        public boolean contains(Type type) {
+            return subjects.containsKey(type);
+        }
+
+        public boolean containsAny(Set<Type> types) {
+            for (Type type : types) {
+                if (subjects.containsKey(type)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public Set<Type> getTypes() {
+            return Collections.unmodifiableSet(subjects.keySet());
+        }
+
+        /**
+         * @return Symbols (or achievement names) posted with the type; empty if none
+         */
+        public Set<String> get(Type type) {
+            Set<String> set = subjects.get(type);
+            return set != null ? Collections.unmodifiableSet(set) : Collections.emptySet();
+        }
+
+        // Events merged into this batch
+        public int getEventCount() {
+            return eventCount;
+        }
+
+        @Override
+        public String toString() {
+            return eventCount + " events " + subjects;
+        }
+    }
+
+    private static final class Registration {
+        final Listener listener;
+        final Set<Type> types;
+
+        Registration(Listener listener, Set<Type> types) {
+            this.listener = listener;
+            this.types = types;
+        }
+    }
+
+    private final Portfolio portfolio;
+    private final Executor dispatcher;
+    private final List<Registration> listeners = new CopyOnWriteArrayList<>();
+
+    // Changes waiting for the scheduled delivery, null if none is scheduled
+    private Batch pending;
+
+    // Metrics
+    private long posted;
+    private long delivered;
+
+    /**
+     * Attaches to the portfolio; it posts events from here on
+     *
+     * @param portfolio Portfolio to watch
+     * @param dispatcher Runs deliveries, e.g. SwingUtilities::invokeLater
+     */
+    public PortfolioEvents(Portfolio portfolio, Executor dispatcher) {
+        this.portfolio = portfolio;
+        this.dispatcher = dispatcher;
+        portfolio.setEvents(this);
+    }
+
+    /**
+     * Stops the portfolio posting events. Batches already scheduled are still delivered.
+     */
+    public void detach() {
+        if (portfolio.getEvents() == this) {
+            portfolio.setEvents(null);
+        }
+    }
+
+    // Registers for every type
+    public void addListener(Listener listener) {
+        addListener(listener, EnumSet.allOf(Type.class));
+    }
+
+    /**
+     * @param listener Listener to add
+     * @param types Types it is told about; batches without any of them are not delivered to it
+     */
+    public void addListener(Listener listener, Set<Type> types) {
+        listeners.add(new Registration(listener, EnumSet.copyOf(types)));
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.removeIf(registration -> registration.listener == listener);
+    }
+
+    /**
+     * Records a change for the next batch, scheduling its delivery if none is pending
+     *
+     * @param subject Symbol or achievement involved, or null (e.g. a reorder)
+     */
+    void post(Type type, String subject) {
+        synchronized (this) {
+            posted++;
+            if (pending != null) {
+                pending.add(type, subject);
+                return;
+            }
+            pending = new Batch();
+            pending.add(type, subject);
+        }
+        dispatcher.execute(this::deliver);
+    }
+
+    // Runs on the dispatcher. Events posted by listeners go into the next batch.
+    private void deliver() {
+        Batch batch;
+        synchronized (this) {
+            batch = pending;
+            pending = null;
+            delivered++;
+        }
+        for (Registration registration : listeners) {
+            if (batch.containsAny(registration.types)) {
+                try {
+                    registration.listener.portfolioChanged(batch);
+                } catch (RuntimeException e) {
+                    // One failing widget must not keep the others from updating
+                    System.err.println("Portfolio listener failed: " + e);
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    public synchronized long getPostedCount() {
+        return posted;
+    }
+
+    // Batches delivered; posted / delivered is the coalescing ratio
+    public synchronized long getDeliveredCount() {
+        return delivered;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Events posted: %d | Batches delivered: %d", posted, delivered);
+    }
+}
@@ -0,0 +1,384 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Versioned binary file format for portfolios, replacing Java serialization.
+ * Files are written and read through a {@link FileChannel} in one pass.
+ *
+ * Layout (version 2, all integers big-endian):
+ * <pre>
+ *   Header
+ *     magic            4 bytes   "PFOL"
+ *     version          u16       2
+ *     flags            u16       bit 0: gamification section present
+ *     rowCount         i32
+ *     journalSequence  i64       last journal record folded in (version 2+)
+ *     portfolioName    string
+ *   Symbol table       rowCount x (symbol string, name string), in display order
+ *   Columns            rowCount x i32 quantity
+ *                      rowCount x f64 buy price
+ *                      rowCount x f64 current price
+ *   Gamification       (only if flag bit 0 is set)
+ *     level            i32
+ *     experience       i32
+ *     dailyProfitLoss  f64
+ *     achievements     i32 count, then count x string
+ *     stats            i32 count, then count x (string key, i32 value)
+ *   Trailer
+ *     crc32            u32 over every byte before it
+ *
+ *   string = u16 byte length + UTF-8 bytes; length 0xFFFF marks null
+ * </pre>
+ * Readers reject files with a newer version than they understand; version 1
+ * files (no journal sequence) read as sequence 0. Files
+ * written by the old ObjectOutputStream code (they start with 0xACED) are
+ * still read through {@link #readLegacy}; the first save over such a file
+ * keeps a copy of it next to the new one with a ".legacy" suffix.
+ */
+public class PortfolioFile {
+
+    public static final int MAGIC = 0x50464F4C; // "PFOL"
+    public static final int VERSION = 2;
+
+    private static final int FLAG_GAMIFIED = 1;
+    private static final int NULL_STRING = 0xFFFF;
+    private static final int HEADER_BYTES = 20;
+    private static final int V1_HEADER_BYTES = 12;
+    private static final int ROW_BYTES = 4 + 8 + 8;
+
+    // Java serialization stream magic
+    private static final short LEGACY_MAGIC = (short) 0xACED;
+
+    private PortfolioFile() {
+    }
+
+    /**
+     * Writes a portfolio in the current format, replacing the file
+     *
+     * @param portfolio Portfolio to save
+     * @param file Target file
+     */
+    public static void write(Portfolio portfolio, Path file) throws IOException {
+        write(encode(portfolio), file);
+    }
+
+    /**
+     * Replaces the file with already encoded contents. The data goes to a
+     * temporary file first, is forced to disk and then renamed over the
+     * target, so a crash leaves either the old or the new file in place.
+     *
+     * @param buffer Complete file contents, as returned by {@link #encode}
+     * @param file Target file
+     */
+    public static void write(ByteBuffer buffer, Path file) throws IOException {
+        if (isLegacy(file)) {
+            Path backup = file.resolveSibling(file.getFileName() + ".legacy");
+            if (!Files.exists(backup)) {
+                Files.copy(file, backup);
+            }
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Encodes a portfolio into a buffer holding the complete file
+     *
+     * @param portfolio Portfolio to encode
+     * @return Buffer positioned at 0, limit at the end of the data
+     */
+    public static ByteBuffer encode(Portfolio portfolio) {
+        return encode(portfolio, portfolio.getJournalSequence());
+    }
+
+    /**
+     * @param portfolio Portfolio to encode
+     * @param journalSequence Last journal record reflected in the portfolio
+     * @return Buffer positioned at 0, limit at the end of the data
+     */
+    public static ByteBuffer encode(Portfolio portfolio, long journalSequence) {
+        HoldingsTable holdings = portfolio.getHoldings();
+        int rows = holdings.size();
+        GamifiedPortfolio gamified = portfolio instanceof GamifiedPortfolio ? (GamifiedPortfolio) portfolio : null;
+
+        // Encode strings up front so the buffer can be sized exactly
+        byte[] name = utf8(portfolio.getPortfolioName());
+        byte[][] symbols = new byte[rows][];
+        byte[][] names = new byte[rows][];
+        int size = HEADER_BYTES + stringBytes(name) + rows * ROW_BYTES + 4;
+        for (int row = 0; row < rows; row++) {
+            symbols[row] = utf8(holdings.symbolAt(row));
+            names[row] = utf8(holdings.nameAt(row));
+            size += stringBytes(symbols[row]) + stringBytes(names[row]);
+        }
+
+        List<byte[]> achievements = new ArrayList<>();
+        Map<byte[], Integer> stats = new LinkedHashMap<>();
+        if (gamified != null) {
+            size += 4 + 4 + 8 + 4 + 4;
+            for (String achievement : gamified.getAchievements()) {
+                byte[] bytes = utf8(achievement);
+                achievements.add(bytes);
+                size += stringBytes(bytes);
+            }
+            for (Map.Entry<String, Integer> stat : gamified.getStats().entrySet()) {
+                byte[] bytes = utf8(stat.getKey());
+                stats.put(bytes, stat.getValue());
+                size += stringBytes(bytes) + 4;
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC);
+        buffer.putShort((short) VERSION);
+        buffer.putShort((short) (gamified != null ? FLAG_GAMIFIED : 0));
+        buffer.putInt(rows);
+        buffer.putLong(journalSequence);
+        putString(buffer, name);
+
+        for (int row = 0; row < rows; row++) {
+            putString(buffer, symbols[row]);
+            putString(buffer, names[row]);
+        }
+        for (int row = 0; row < rows; row++) {
+            buffer.putInt(holdings.quantityAt(row));
+        }
+        for (int row = 0; row < rows; row++) {
+            buffer.putDouble(holdings.buyPriceAt(row));
+        }
+        for (int row = 0; row < rows; row++) {
+            buffer.putDouble(holdings.currentPriceAt(row));
+        }
+
+        if (gamified != null) {
+            buffer.putInt(gamified.getLevel());
+            buffer.putInt(gamified.getExperience());
+            buffer.putDouble(gamified.getDailyProfitLoss());
+            buffer.putInt(achievements.size());
+            for (byte[] achievement : achievements) {
+                putString(buffer, achievement);
+            }
+            buffer.putInt(stats.size());
+            for (Map.Entry<byte[], Integer> stat : stats.entrySet()) {
+                putString(buffer, stat.getKey());
+                buffer.putInt(stat.getValue() != null ? stat.getValue() : 0);
+            }
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Reads a portfolio in either the current or the legacy format
+     *
+     * @param file File to read
+     * @return Loaded portfolio; a GamifiedPortfolio if the file has gamification data
+     */
+    public static Portfolio read(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Portfolio file too large: " + length + " bytes");
+            }
+            buffer = ByteBuffer.allocate((int) length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("Unexpected end of portfolio file");
+                }
+            }
+            buffer.flip();
+        }
+
+        if (buffer.remaining() >= 2 && buffer.getShort(0) == LEGACY_MAGIC) {
+            return readLegacy(buffer.array());
+        }
+        return decode(buffer);
+    }
+
+    /**
+     * Decodes a buffer holding a complete file in the current format
+     *
+     * @param buffer File contents, positioned at 0
+     * @return Decoded portfolio
+     */
+    public static Portfolio decode(ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.remaining() < V1_HEADER_BYTES + 4 || buffer.getInt() != MAGIC) {
+                throw new IOException("Not a portfolio file");
+            }
+            int version = buffer.getShort() & 0xFFFF;
+            if (version > VERSION) {
+                throw new IOException("Portfolio file version " + version
+                        + " was written by a newer version of the app (this one reads up to " + VERSION + ")");
+            }
+
+            // Verify the checksum before trusting any counts
+            int end = buffer.limit() - 4;
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), buffer.arrayOffset(), end);
+            if ((int) crc.getValue() != buffer.getInt(end)) {
+                throw new IOException("Portfolio file is damaged (checksum mismatch)");
+            }
+
+            int flags = buffer.getShort() & 0xFFFF;
+            int rows = buffer.getInt();
+            if (rows < 0 || (long) rows * ROW_BYTES > end) {
+                throw new IOException("Invalid row count: " + rows);
+            }
+            long journalSequence = version >= 2 ? buffer.getLong() : 0;
+            String name = getString(buffer);
+
+            String[] symbols = new String[rows];
+            String[] names = new String[rows];
+            for (int row = 0; row < rows; row++) {
+                symbols[row] = getString(buffer);
+                names[row] = getString(buffer);
+            }
+            int[] quantities = new int[rows];
+            double[] buyPrices = new double[rows];
+            double[] currentPrices = new double[rows];
+            for (int row = 0; row < rows; row++) {
+                quantities[row] = buffer.getInt();
+            }
+            for (int row = 0; row < rows; row++) {
+                buyPrices[row] = buffer.getDouble();
+            }
+            for (int row = 0; row < rows; row++) {
+                currentPrices[row] = buffer.getDouble();
+            }
+
+            Portfolio portfolio;
+            if ((flags & FLAG_GAMIFIED) != 0) {
+                GamifiedPortfolio gamified = new GamifiedPortfolio(name);
+                int level = buffer.getInt();
+                int experience = buffer.getInt();
+                double dailyProfitLoss = buffer.getDouble();
+                int achievementCount = buffer.getInt();
+                List<String> achievements = new ArrayList<>(Math.min(achievementCount, 1024));
+                for (int i = 0; i < achievementCount; i++) {
+                    achievements.add(getString(buffer));
+                }
+                int statCount = buffer.getInt();
+                Map<String, Integer> stats = new LinkedHashMap<>();
+                for (int i = 0; i < statCount; i++) {
+                    stats.put(getString(buffer), buffer.getInt());
+                }
+                gamified.restoreProgress(level, experience, dailyProfitLoss, achievements, stats);
+                portfolio = gamified;
+            } else {
+                portfolio = new Portfolio(name);
+            }
+
+            for (int row = 0; row < rows; row++) {
+                portfolio.restorePosition(names[row], symbols[row], quantities[row], buyPrices[row], currentPrices[row]);
+            }
+            portfolio.setJournalSequence(journalSequence);
+            return portfolio;
+        } catch (RuntimeException e) {
+            // BufferUnderflowException and friends from a truncated or corrupt file
+            throw new IOException("Portfolio file is damaged: " + e, e);
+        }
+    }
+
+    /**
+     * Migration reader for files written with ObjectOutputStream
+     *
+     * @param bytes Complete file contents
+     * @return Deserialized portfolio
+     */
+    public static Portfolio readLegacy(byte[] bytes) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (Portfolio) in.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Unreadable legacy portfolio file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @param file File to check (need not exist)
+     * @return true if the file was written with Java serialization
+     */
+    public static boolean isLegacy(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(2);
+            while (magic.hasRemaining() && channel.read(magic) > 0) {
+                // Keep reading until both bytes are in
+            }
+            return !magic.hasRemaining() && magic.getShort(0) == LEGACY_MAGIC;
+        }
+    }
+
+    // String encoding, shared with PortfolioJournal
+
+    static byte[] utf8(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length >= NULL_STRING) {
+            throw new IllegalArgumentException("String too long for portfolio file: " + bytes.length + " bytes");
+        }
+        return bytes;
+    }
+
+    static int stringBytes(byte[] bytes) {
+        return 2 + (bytes != null ? bytes.length : 0);
+    }
+
+    static void putString(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putShort((short) NULL_STRING);
+            return;
+        }
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    static String getString(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        if (length == NULL_STRING) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
@@ -1,137 +1,366 @@
 import java.io.*;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class PortfolioImporter {
     
+    // Errors kept in an ImportResult; the rest are only counted
+    public static final int MAX_REPORTED_ERRORS = 100;
+    
     /**
-     * Imports portfolio from Zerodha CSV format
-     * Expected columns: Instrument, Qty., Avg. cost, LTP, P&L
+     * Turns the fields of one CSV row into a Stock
      */
-    public static ArrayList<Stock> importFromZerodha(String filePath) throws IOException {
-        ArrayList<Stock> stocks = new ArrayList<>();
-        BufferedReader reader = new BufferedReader(new FileReader(filePath));
+    public interface RowMapper {
+        /**
+         * @param fields Tokenizer positioned on the row; only valid during the call
+         * @return The stock, or null to skip the row without reporting it
+         * @throws RuntimeException (typically NumberFormatException) if the row
+         *         is invalid; the row is then reported as an {@link ImportError}
+         */
+        Stock map(CsvTokenizer fields);
+    }
+    
+    /**
+     * A row that could not be imported
+     */
+    public static class ImportError {
+        private final long lineNumber;
+        private final String line;
+        private final String message;
+        private final Exception cause;
         
-        String line;
-        boolean isFirstLine = true;
+        ImportError(long lineNumber, String line, Exception cause) {
+            this.lineNumber = lineNumber;
+            this.line = line;
+            this.message = cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+            this.cause = cause;
+        }
         
-        while ((line = reader.readLine()) != null) {
-            if (isFirstLine) {
-                isFirstLine = false;
-                continue; // Skip header
-            }
-            
-            String[] parts = line.split(",");
-            if (parts.length >= 4) {
-                try {
-                    String symbol = parts[0].trim();
-                    
-                    // Convert Zerodha symbol to Yahoo Finance format
-                    if (!symbol.contains(".NS") && !symbol.contains(".BO")) {
-                        symbol = symbol + ".NS"; // Default to NSE
-                    }
-                    
-                    int quantity = Integer.parseInt(parts[1].trim());
-                    double avgCost = Double.parseDouble(parts[2].trim());
-                    double currentPrice = Double.parseDouble(parts[3].trim());
-                    
-                    Stock stock = new Stock(symbol, symbol, quantity, avgCost, currentPrice);
-                    stocks.add(stock);
-                } catch (NumberFormatException e) {
-                    System.err.println("Skipping invalid line: " + line);
-                }
-            }
+        // 1-based line number in the file where the row starts, the header being line 1
+        public long getLineNumber() {
+            return lineNumber;
         }
         
-        reader.close();
-        return stocks;
+        // Text of the row; a quoted field may make it span several lines
+        public String getLine() {
+            return line;
+        }
+        
+        public String getMessage() {
+            return message;
+        }
+        
+        public Exception getCause() {
+            return cause;
+        }
+        
+        @Override
+        public String toString() {
+            return "Line " + lineNumber + ": " + message + " [" + line + "]";
+        }
     }
     
     /**
-     * Imports portfolio from Groww CSV format
-     * Expected columns: Stock Name, Quantity, Avg Buy Price, Current Price
+     * Outcome of an import that pushed its rows to a sink
      */
-    public static ArrayList<Stock> importFromGroww(String filePath) throws IOException {
-        ArrayList<Stock> stocks = new ArrayList<>();
-        BufferedReader reader = new BufferedReader(new FileReader(filePath));
+    public static class ImportResult {
+        private final long rows;
+        private final long imported;
+        private final long skipped;
+        private final long errorCount;
+        private final List<ImportError> errors;
         
-        String line;
-        boolean isFirstLine = true;
+        ImportResult(long rows, long imported, long skipped, long errorCount, List<ImportError> errors) {
+            this.rows = rows;
+            this.imported = imported;
+            this.skipped = skipped;
+            this.errorCount = errorCount;
+            this.errors = Collections.unmodifiableList(errors);
+        }
         
-        while ((line = reader.readLine()) != null) {
-            if (isFirstLine) {
-                isFirstLine = false;
-                continue; // Skip header
-            }
-            
-            String[] parts = line.split(",");
-            if (parts.length >= 4) {
-                try {
-                    String name = parts[0].trim();
-                    String symbol = extractSymbol(name);
-                    
-                    // Convert to Yahoo Finance format
-                    if (!symbol.contains(".NS") && !symbol.contains(".BO")) {
-                        symbol = symbol + ".NS";
-                    }
-                    
-                    int quantity = Integer.parseInt(parts[1].trim());
-                    double avgCost = Double.parseDouble(parts[2].trim().replace("₹", "").replace(",", ""));
-                    double currentPrice = Double.parseDouble(parts[3].trim().replace("₹", "").replace(",", ""));
-                    
-                    Stock stock = new Stock(name, symbol, quantity, avgCost, currentPrice);
-                    stocks.add(stock);
-                } catch (NumberFormatException e) {
-                    System.err.println("Skipping invalid line: " + line);
-                }
-            }
+        // Data rows (CSV records) read, not counting the header
+        public long getRows() {
+            return rows;
         }
         
-        reader.close();
-        return stocks;
+        public long getImported() {
+            return imported;
+        }
+        
+        // Rows the mapper passed over (too few columns)
+        public long getSkipped() {
+            return skipped;
+        }
+        
+        public long getErrorCount() {
+            return errorCount;
+        }
+        
+        // The first MAX_REPORTED_ERRORS errors
+        public List<ImportError> getErrors() {
+            return errors;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("Imported %d of %d rows (%d skipped, %d invalid)", imported, rows, skipped, errorCount);
+        }
+    }
+    
+    /**
+     * Zerodha holdings export
+     * Expected columns: Instrument, Qty., Avg. cost, LTP, P&L
+     */
+    public static final RowMapper ZERODHA = fields -> {
+        if (fields.getFieldCount() < 4) {
+            return null;
+        }
+        String symbol = yahooSymbol(fields.getTrimmed(0));
+        int quantity = fields.getInt(1);
+        double avgCost = fields.getDouble(2);
+        double currentPrice = fields.getDouble(3);
+        return new Stock(symbol, symbol, quantity, avgCost, currentPrice);
+    };
+    
+    /**
+     * Groww portfolio export
+     * Expected columns: Stock Name, Quantity, Avg Buy Price, Current Price
+     */
+    public static final RowMapper GROWW = fields -> {
+        if (fields.getFieldCount() < 4) {
+            return null;
+        }
+        String name = fields.getTrimmed(0);
+        String symbol = yahooSymbol(extractSymbol(name));
+        int quantity = fields.getInt(1);
+        double avgCost = fields.getAmount(2);
+        double currentPrice = fields.getAmount(3);
+        return new Stock(name, symbol, quantity, avgCost, currentPrice);
+    };
+    
+    /**
+     * Generic CSV with a user-chosen column mapping
+     *
+     * @param nameCol Name column, or -1 to use the symbol as the name
+     */
+    public static RowMapper generic(int symbolCol, int nameCol, int qtyCol, int buyPriceCol, int currentPriceCol) {
+        return fields -> {
+            String symbol = fields.getTrimmed(symbolCol);
+            String name = nameCol >= 0 ? fields.getTrimmed(nameCol) : symbol;
+            int quantity = fields.getInt(qtyCol);
+            double buyPrice = fields.getAmount(buyPriceCol);
+            double currentPrice = fields.getAmount(currentPriceCol);
+            return new Stock(name, yahooSymbol(symbol), quantity, buyPrice, currentPrice);
+        };
+    }
+    
+    /**
+     * Imports portfolio from Zerodha CSV format
+     * Expected columns: Instrument, Qty., Avg. cost, LTP, P&L
+     */
+    public static ArrayList<Stock> importFromZerodha(String filePath) throws IOException {
+        return importAll(filePath, ZERODHA);
+    }
+    
+    /**
+     * Imports portfolio from Groww CSV format
+     * Expected columns: Stock Name, Quantity, Avg Buy Price, Current Price
+     */
+    public static ArrayList<Stock> importFromGroww(String filePath) throws IOException {
+        return importAll(filePath, GROWW);
     }
     
     /**
      * Generic CSV importer
      * User can specify column mapping
      */
-    public static ArrayList<Stock> importFromGenericCSV(String filePath, 
+    public static ArrayList<Stock> importFromGenericCSV(String filePath,
             int symbolCol, int nameCol, int qtyCol, int buyPriceCol, int currentPriceCol) throws IOException {
-        
+        return importAll(filePath, generic(symbolCol, nameCol, qtyCol, buyPriceCol, currentPriceCol));
+    }
+    
+    // Collects a whole file; invalid rows are logged, as these methods always did
+    private static ArrayList<Stock> importAll(String filePath, RowMapper mapper) throws IOException {
         ArrayList<Stock> stocks = new ArrayList<>();
-        BufferedReader reader = new BufferedReader(new FileReader(filePath));
+        importTo(new File(filePath).toPath(), mapper, stocks::add,
+                error -> System.err.println("Skipping invalid line: " + error));
+        return stocks;
+    }
+    
+    /**
+     * Streams a CSV file through a mapper into a sink, one row at a time.
+     * Memory use does not depend on the size of the file.
+     *
+     * @param file CSV file with a header line
+     * @param mapper Row format, e.g. {@link #ZERODHA}
+     * @param sink Receives each imported stock, in file order
+     * @return Counts, plus the first {@link #MAX_REPORTED_ERRORS} invalid rows
+     */
+    public static ImportResult importTo(Path file, RowMapper mapper, Consumer<Stock> sink) throws IOException {
+        return importTo(file, mapper, sink, null);
+    }
+    
+    /**
+     * @param file CSV file with a header line
+     * @param mapper Row format
+     * @param sink Receives each imported stock, in file order
+     * @param errorSink Receives every invalid row as it is found, or null
+     * @return Counts, plus the first {@link #MAX_REPORTED_ERRORS} invalid rows
+     */
+    public static ImportResult importTo(Path file, RowMapper mapper, Consumer<Stock> sink,
+                                        Consumer<ImportError> errorSink) throws IOException {
+        List<ImportError> errors = new ArrayList<>();
+        long[] errorCount = new long[1];
+        Consumer<ImportError> onError = error -> {
+            errorCount[0]++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(error);
+            }
+            if (errorSink != null) {
+                errorSink.accept(error);
+            }
+        };
         
-        String line;
-        boolean isFirstLine = true;
+        long imported = 0;
+        try (RowIterator rows = new RowIterator(file, mapper, onError)) {
+            while (rows.hasNext()) {
+                sink.accept(rows.next());
+                imported++;
+            }
+            return new ImportResult(rows.rows, imported, rows.skipped, errorCount[0], errors);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+    
+    /**
+     * Lazily parses a CSV file. The stream holds the file open and must be
+     * closed, e.g. with try-with-resources. A read error surfaces as an
+     * {@link UncheckedIOException} from the terminal operation.
+     *
+     * @param file CSV file with a header line
+     * @param mapper Row format
+     * @param errorSink Receives every invalid row as it is found, or null to ignore them
+     * @return Sequential, ordered stream of the imported stocks
+     */
+    public static Stream<Stock> stream(Path file, RowMapper mapper, Consumer<ImportError> errorSink) throws IOException {
+        RowIterator rows = new RowIterator(file, mapper, errorSink != null ? errorSink : error -> { });
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(rows,
+                Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(rows::close);
+    }
+    
+    // Reads one row ahead so hasNext can skip rows that do not map to a stock
+    private static class RowIterator implements Iterator<Stock>, Closeable {
+        private final Reader reader;
+        private final RowMapper mapper;
+        private final Consumer<ImportError> errors;
+        private final CsvTokenizer tokenizer = new CsvTokenizer();
+        private char[] buffer = new char[64 * 1024];
+        private int position;
+        private int limit;
+        private boolean endOfInput;
+        private long lineNumber; // Lines before the current row
+        private long rows;
+        private long skipped;
+        private Stock next;
         
-        while ((line = reader.readLine()) != null) {
-            if (isFirstLine) {
-                isFirstLine = false;
-                continue; // Skip header
+        RowIterator(Path file, RowMapper mapper, Consumer<ImportError> errors) throws IOException {
+            this.reader = new FileReader(file.toFile());
+            this.mapper = mapper;
+            this.errors = errors;
+            if (nextRecord()) {
+                lineNumber = tokenizer.getLineCount(); // Skip header
             }
-            
-            String[] parts = line.split(",");
-            
+        }
+        
+        @Override
+        public boolean hasNext() {
             try {
-                String symbol = parts[symbolCol].trim();
-                String name = nameCol >= 0 ? parts[nameCol].trim() : symbol;
-                int quantity = Integer.parseInt(parts[qtyCol].trim());
-                double buyPrice = Double.parseDouble(parts[buyPriceCol].trim().replace("₹", "").replace(",", ""));
-                double currentPrice = Double.parseDouble(parts[currentPriceCol].trim().replace("₹", "").replace(",", ""));
-                
-                // Ensure Yahoo Finance format
-                if (!symbol.contains(".NS") && !symbol.contains(".BO")) {
-                    symbol = symbol + ".NS";
+                while (next == null && nextRecord()) {
+                    rows++;
+                    try {
+                        next = mapper.map(tokenizer);
+                        if (next == null) {
+                            skipped++;
+                        }
+                    } catch (RuntimeException e) {
+                        errors.accept(new ImportError(lineNumber + 1, tokenizer.getRecord(), e));
+                    }
+                    lineNumber += tokenizer.getLineCount();
                 }
-                
-                Stock stock = new Stock(name, symbol, quantity, buyPrice, currentPrice);
-                stocks.add(stock);
-            } catch (Exception e) {
-                System.err.println("Error parsing line: " + line + " - " + e.getMessage());
+                return next != null;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
         }
         
-        reader.close();
-        return stocks;
+        // Positions the tokenizer on the next record, reading more input as needed
+        private boolean nextRecord() throws IOException {
+            while (true) {
+                if (position < limit) {
+                    int end = tokenizer.next(buffer, position, limit, endOfInput);
+                    if (end >= 0) {
+                        position = end;
+                        return true;
+                    }
+                } else if (endOfInput) {
+                    return false;
+                }
+                // The record runs past the buffered input: keep it and read more
+                if (position > 0) {
+                    System.arraycopy(buffer, position, buffer, 0, limit - position);
+                    limit -= position;
+                    position = 0;
+                }
+                if (limit == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                int read = reader.read(buffer, limit, buffer.length - limit);
+                if (read < 0) {
+                    endOfInput = true;
+                } else {
+                    limit += read;
+                }
+            }
+        }
+        
+        @Override
+        public Stock next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Stock stock = next;
+            next = null;
+            return stock;
+        }
+        
+        @Override
+        public void close() {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                // Nothing useful to do for a file we only read
+            }
+        }
+    }
+    
+    // Converts to Yahoo Finance format, defaulting to NSE
+    private static String yahooSymbol(String symbol) {
+        if (!symbol.contains(".NS") && !symbol.contains(".BO")) {
+            return symbol + ".NS";
+        }
+        return symbol;
     }
     
     /**
@@ -177,4 +406,3 @@ public class PortfolioImporter {
         writer.close();
     }
 }
-
@@ -0,0 +1,598 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal of portfolio changes, kept next to the snapshot
+ * written by {@link PortfolioFile} (portfolio.dat.journal beside portfolio.dat).
+ *
+ * Every change to an attached portfolio - positions added or removed,
+ * price and quantity edits, re-sorts, XP, achievements and stats - becomes
+ * a small record with an increasing sequence number. {@link #sync} appends
+ * the records collected since the last call, so a save costs one append
+ * instead of rewriting the whole portfolio. Once the journal has grown
+ * past a threshold, {@link #compact} folds it into a new snapshot in the
+ * background and drops the records the snapshot now covers.
+ *
+ * Recovery loads the snapshot and replays the records newer than the
+ * sequence number stored in it. A record cut short by a crash (bad length
+ * or checksum) ends the journal; it and anything after it are discarded.
+ *
+ * Record layout (all integers big-endian):
+ * <pre>
+ *   length     i32   bytes of type + sequence + payload
+ *   type       u8
+ *   sequence   i64
+ *   payload          depends on the type; strings as in PortfolioFile
+ *   crc32      u32   over type + sequence + payload
+ * </pre>
+ */
+public class PortfolioJournal implements HoldingsTable.ChangeListener, Closeable {
+
+    public static final long DEFAULT_COMPACT_THRESHOLD = 256 * 1024;
+
+    // Sort record payloads
+    static final int SORT_BY_NAME = 1;
+    static final int SORT_BY_PROFIT = 2;
+    static final int SORT_BY_VALUE = 3;
+
+    // Record types
+    private static final byte ADD = 1;
+    private static final byte REMOVE = 2;
+    private static final byte PRICE = 3;
+    private static final byte QUANTITY = 4;
+    private static final byte SORT = 5;
+    private static final byte EXPERIENCE = 6;
+    private static final byte ACHIEVEMENT = 7;
+    private static final byte STAT = 8;
+    private static final byte DAILY_PROFIT_LOSS = 9;
+
+    private static final int RECORD_HEADER_BYTES = 4 + 1 + 8;
+    private static final int MAX_RECORD_BYTES = 1 << 20;
+    // Pending records are written out (without forcing) once they reach this size
+    private static final int FLUSH_BYTES = 64 * 1024;
+
+    private final Portfolio portfolio;
+    private final Path snapshotFile;
+    private final Path journalFile;
+    private final long compactThreshold;
+    private final ExecutorService compactor;
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private final Thread shutdownHook;
+    private final CRC32 crc = new CRC32();
+
+    private FileChannel channel;
+    private ByteBuffer pending = ByteBuffer.allocate(4096);
+    private long lastSequence;
+    private long journalBytes;
+    private long recordCount;
+    private long compactions;
+    private boolean closed;
+
+    // Outcome of reading a journal file
+    private static class Replay {
+        long lastSequence;
+        long validBytes;
+        long fileBytes;
+        int applied;
+    }
+
+    private PortfolioJournal(Portfolio portfolio, Path snapshotFile, long compactThreshold) throws IOException {
+        this.portfolio = portfolio;
+        this.snapshotFile = snapshotFile;
+        this.journalFile = journalFileFor(snapshotFile);
+        this.compactThreshold = compactThreshold;
+        this.channel = FileChannel.open(journalFile, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "portfolio-journal-compactor");
+            t.setDaemon(true);
+            return t;
+        });
+        // Records still in memory reach the disk when the app exits
+        this.shutdownHook = new Thread(() -> {
+            try {
+                sync();
+            } catch (IOException e) {
+                System.err.println("Error writing portfolio journal: " + e.getMessage());
+            }
+        }, "portfolio-journal-sync");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Recovers a portfolio and starts journaling its changes
+     *
+     * @param snapshotFile Snapshot file (need not exist yet)
+     * @param fallback Portfolio to start from when there is no snapshot, or
+     *                 when the snapshot holds a different kind of portfolio
+     *                 (in which case the snapshot is replaced)
+     * @return Journal attached to the recovered portfolio
+     */
+    public static PortfolioJournal open(Path snapshotFile, Portfolio fallback) throws IOException {
+        return open(snapshotFile, fallback, DEFAULT_COMPACT_THRESHOLD);
+    }
+
+    /**
+     * @param snapshotFile Snapshot file (need not exist yet)
+     * @param fallback Portfolio to start from, see {@link #open(Path, Portfolio)}
+     * @param compactThreshold Journal size in bytes from which {@link #needsCompaction} is true
+     * @return Journal attached to the recovered portfolio
+     */
+    public static PortfolioJournal open(Path snapshotFile, Portfolio fallback, long compactThreshold) throws IOException {
+        Portfolio portfolio = fallback;
+        boolean replaceSnapshot = false;
+        if (Files.exists(snapshotFile)) {
+            Portfolio loaded = PortfolioFile.read(snapshotFile);
+            if (fallback.getClass().isInstance(loaded)) {
+                portfolio = loaded;
+            } else {
+                replaceSnapshot = true;
+            }
+        }
+
+        Replay replay = new Replay();
+        if (replaceSnapshot) {
+            // The journal belongs to the old snapshot; start both afresh
+            PortfolioFile.write(PortfolioFile.encode(portfolio, 0), snapshotFile);
+            Files.deleteIfExists(journalFileFor(snapshotFile));
+        } else {
+            replay = replay(portfolio, journalFileFor(snapshotFile), portfolio.getJournalSequence());
+        }
+
+        PortfolioJournal journal = new PortfolioJournal(portfolio, snapshotFile, compactThreshold);
+        try {
+            if (replay.validBytes < replay.fileBytes) {
+                System.err.println("Discarding " + (replay.fileBytes - replay.validBytes)
+                        + " bytes of incomplete records at the end of " + journal.journalFile);
+                journal.channel.truncate(replay.validBytes);
+                journal.channel.force(true);
+            }
+            journal.channel.position(replay.validBytes);
+            journal.journalBytes = replay.validBytes;
+            journal.lastSequence = Math.max(replay.lastSequence, portfolio.getJournalSequence());
+            if (!Files.exists(snapshotFile)) {
+                // First run: give the journal a snapshot to apply to, so the
+                // files can also be read without going through open()
+                PortfolioFile.write(PortfolioFile.encode(portfolio, journal.lastSequence), snapshotFile);
+            }
+        } catch (IOException e) {
+            journal.close();
+            throw e;
+        }
+        portfolio.setJournal(journal);
+        return journal;
+    }
+
+    /**
+     * Applies the changes journaled since a portfolio's snapshot was written,
+     * without attaching a journal or touching the file
+     *
+     * @param portfolio Portfolio freshly loaded from its snapshot
+     * @param journalFile Journal file (need not exist)
+     * @return Number of records applied
+     */
+    public static int replay(Portfolio portfolio, Path journalFile) throws IOException {
+        Replay replay = replay(portfolio, journalFile, portfolio.getJournalSequence());
+        portfolio.setJournalSequence(Math.max(replay.lastSequence, portfolio.getJournalSequence()));
+        return replay.applied;
+    }
+
+    /**
+     * @param snapshotFile Snapshot file
+     * @return Journal file kept beside it
+     */
+    public static Path journalFileFor(Path snapshotFile) {
+        return snapshotFile.resolveSibling(snapshotFile.getFileName() + ".journal");
+    }
+
+    private static Replay replay(Portfolio portfolio, Path journalFile, long afterSequence) throws IOException {
+        Replay replay = new Replay();
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(journalFile);
+        } catch (NoSuchFileException e) {
+            return replay;
+        }
+        replay.fileBytes = bytes.length;
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= RECORD_HEADER_BYTES) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            if (length < RECORD_HEADER_BYTES - 4 || length > MAX_RECORD_BYTES || length + 4 > buffer.remaining()) {
+                break;
+            }
+            crc.reset();
+            crc.update(bytes, start + 4, length);
+            if ((int) crc.getValue() != buffer.getInt(start + 4 + length)) {
+                break;
+            }
+
+            byte type = buffer.get();
+            long sequence = buffer.getLong();
+            if (sequence > afterSequence) {
+                try {
+                    apply(portfolio, type, buffer);
+                } catch (RuntimeException e) {
+                    throw new IOException("Portfolio journal record " + sequence + " is damaged: " + e, e);
+                }
+                afterSequence = sequence;
+                replay.applied++;
+            }
+            replay.lastSequence = Math.max(replay.lastSequence, sequence);
+            buffer.position(start + 4 + length + 4);
+            replay.validBytes = buffer.position();
+        }
+        return replay;
+    }
+
+    private static void apply(Portfolio portfolio, byte type, ByteBuffer buffer) throws IOException {
+        GamifiedPortfolio gamified = portfolio instanceof GamifiedPortfolio ? (GamifiedPortfolio) portfolio : null;
+        switch (type) {
+            case ADD: {
+                String name = PortfolioFile.getString(buffer);
+                String symbol = PortfolioFile.getString(buffer);
+                portfolio.restorePosition(name, symbol, buffer.getInt(), buffer.getDouble(), buffer.getDouble());
+                break;
+            }
+            case REMOVE:
+                portfolio.removeStock(PortfolioFile.getString(buffer));
+                break;
+            case PRICE:
+                portfolio.updatePrice(PortfolioFile.getString(buffer), buffer.getDouble());
+                break;
+            case QUANTITY: {
+                HoldingsTable holdings = portfolio.getHoldings();
+                int id = holdings.find(PortfolioFile.getString(buffer));
+                int quantity = buffer.getInt();
+                if (id >= 0) {
+                    holdings.setQuantity(id, quantity);
+                }
+                break;
+            }
+            case SORT: {
+                int order = buffer.get();
+                if (order == SORT_BY_NAME) {
+                    portfolio.sortByName();
+                } else if (order == SORT_BY_PROFIT) {
+                    portfolio.sortByProfit();
+                } else if (order == SORT_BY_VALUE) {
+                    portfolio.sortByValue();
+                }
+                break;
+            }
+            // Progress records only mean something to a gamified portfolio
+            case EXPERIENCE: {
+                int experience = buffer.getInt();
+                if (gamified != null) {
+                    gamified.addExperience(experience);
+                }
+                break;
+            }
+            case ACHIEVEMENT: {
+                String achievement = PortfolioFile.getString(buffer);
+                if (gamified != null) {
+                    gamified.unlock(achievement);
+                }
+                break;
+            }
+            case STAT: {
+                String key = PortfolioFile.getString(buffer);
+                int value = buffer.getInt();
+                if (gamified != null) {
+                    gamified.putStat(key, value);
+                }
+                break;
+            }
+            case DAILY_PROFIT_LOSS: {
+                double dailyProfitLoss = buffer.getDouble();
+                if (gamified != null) {
+                    gamified.setDailyProfitLoss(dailyProfitLoss);
+                }
+                break;
+            }
+            default:
+                throw new IOException("Unknown portfolio journal record type " + type
+                        + " (written by a newer version of the app?)");
+        }
+    }
+
+    // Recording, called by Portfolio and GamifiedPortfolio as they change
+
+    synchronized void recordAdd(String name, String symbol, int quantity, double buyPrice, double currentPrice) {
+        byte[] nameBytes = PortfolioFile.utf8(name);
+        byte[] symbolBytes = PortfolioFile.utf8(symbol);
+        int start = begin(ADD, PortfolioFile.stringBytes(nameBytes) + PortfolioFile.stringBytes(symbolBytes) + 4 + 8 + 8);
+        PortfolioFile.putString(pending, nameBytes);
+        PortfolioFile.putString(pending, symbolBytes);
+        pending.putInt(quantity);
+        pending.putDouble(buyPrice);
+        pending.putDouble(currentPrice);
+        end(start);
+    }
+
+    synchronized void recordRemove(String symbol) {
+        byte[] symbolBytes = PortfolioFile.utf8(symbol);
+        int start = begin(REMOVE, PortfolioFile.stringBytes(symbolBytes));
+        PortfolioFile.putString(pending, symbolBytes);
+        end(start);
+    }
+
+    @Override
+    public synchronized void priceChanged(String symbol, double price) {
+        byte[] symbolBytes = PortfolioFile.utf8(symbol);
+        int start = begin(PRICE, PortfolioFile.stringBytes(symbolBytes) + 8);
+        PortfolioFile.putString(pending, symbolBytes);
+        pending.putDouble(price);
+        end(start);
+    }
+
+    @Override
+    public synchronized void quantityChanged(String symbol, int quantity) {
+        byte[] symbolBytes = PortfolioFile.utf8(symbol);
+        int start = begin(QUANTITY, PortfolioFile.stringBytes(symbolBytes) + 4);
+        PortfolioFile.putString(pending, symbolBytes);
+        pending.putInt(quantity);
+        end(start);
+    }
+
+    synchronized void recordSort(int order) {
+        int start = begin(SORT, 1);
+        pending.put((byte) order);
+        end(start);
+    }
+
+    synchronized void recordExperience(int experience) {
+        int start = begin(EXPERIENCE, 4);
+        pending.putInt(experience);
+        end(start);
+    }
+
+    synchronized void recordAchievement(String achievement) {
+        byte[] bytes = PortfolioFile.utf8(achievement);
+        int start = begin(ACHIEVEMENT, PortfolioFile.stringBytes(bytes));
+        PortfolioFile.putString(pending, bytes);
+        end(start);
+    }
+
+    synchronized void recordStat(String key, int value) {
+        byte[] keyBytes = PortfolioFile.utf8(key);
+        int start = begin(STAT, PortfolioFile.stringBytes(keyBytes) + 4);
+        PortfolioFile.putString(pending, keyBytes);
+        pending.putInt(value);
+        end(start);
+    }
+
+    synchronized void recordDailyProfitLoss(double dailyProfitLoss) {
+        int start = begin(DAILY_PROFIT_LOSS, 8);
+        pending.putDouble(dailyProfitLoss);
+        end(start);
+    }
+
+    // Starts a record in the pending buffer; returns where it starts
+    private int begin(byte type, int payloadBytes) {
+        int recordBytes = RECORD_HEADER_BYTES + payloadBytes + 4;
+        if (pending.remaining() < recordBytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + recordBytes));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+        int start = pending.position();
+        pending.putInt(1 + 8 + payloadBytes);
+        pending.put(type);
+        pending.putLong(++lastSequence);
+        return start;
+    }
+
+    private void end(int start) {
+        crc.reset();
+        crc.update(pending.array(), start + 4, pending.position() - start - 4);
+        pending.putInt((int) crc.getValue());
+        recordCount++;
+        if (pending.position() >= FLUSH_BYTES && !closed) {
+            try {
+                writePending();
+            } catch (IOException e) {
+                // Kept in memory; the next sync tries again
+                System.err.println("Error writing portfolio journal: " + e.getMessage());
+            }
+        }
+    }
+
+    private void writePending() throws IOException {
+        pending.flip();
+        try {
+            while (pending.hasRemaining()) {
+                journalBytes += channel.write(pending);
+            }
+        } finally {
+            pending.compact();
+        }
+    }
+
+    /**
+     * Appends the records collected since the last call and forces them to
+     * disk. This is what a save costs while the journal is attached.
+     */
+    public synchronized void sync() throws IOException {
+        if (closed) {
+            return;
+        }
+        writePending();
+        channel.force(false);
+    }
+
+    /**
+     * @return true once the journal has grown past the compaction threshold
+     */
+    public synchronized boolean needsCompaction() {
+        return journalBytes + pending.position() >= compactThreshold;
+    }
+
+    /**
+     * Folds the journal into a new snapshot. The portfolio is encoded on the
+     * calling thread, which must be the one that changes it; writing the
+     * snapshot and dropping the records it covers happen in the background.
+     * Until the new snapshot is in place the old snapshot plus the journal
+     * still recover the same state.
+     *
+     * @return false if a compaction is already running
+     */
+    public boolean compact() {
+        if (!compacting.compareAndSet(false, true)) {
+            return false;
+        }
+        long sequence;
+        ByteBuffer snapshot;
+        try {
+            sequence = getLastSequence();
+            snapshot = PortfolioFile.encode(portfolio, sequence);
+            compactor.execute(() -> {
+                try {
+                    PortfolioFile.write(snapshot, snapshotFile);
+                    dropThrough(sequence);
+                } catch (IOException e) {
+                    System.err.println("Error compacting portfolio journal: " + e.getMessage());
+                } finally {
+                    compacting.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            compacting.set(false);
+            throw e;
+        }
+        return true;
+    }
+
+    // Removes the records up to and including the given sequence number
+    private synchronized void dropThrough(long sequence) throws IOException {
+        if (closed) {
+            return;
+        }
+        writePending();
+
+        ByteBuffer data = ByteBuffer.allocate((int) journalBytes);
+        while (data.hasRemaining()) {
+            if (channel.read(data, data.position()) < 0) {
+                throw new IOException("Unexpected end of portfolio journal");
+            }
+        }
+        // Records were validated on open and are appended in sequence order
+        int offset = 0;
+        while (offset + RECORD_HEADER_BYTES <= data.limit() && data.getLong(offset + 5) <= sequence) {
+            offset += 4 + data.getInt(offset) + 4;
+        }
+
+        if (offset == data.limit()) {
+            channel.truncate(0);
+            channel.force(true);
+        } else {
+            Path temp = journalFile.resolveSibling(journalFile.getFileName() + ".tmp");
+            data.position(offset);
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while (data.hasRemaining()) {
+                    out.write(data);
+                }
+                out.force(true);
+            }
+            channel.close();
+            try {
+                Files.move(temp, journalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, journalFile, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                channel = FileChannel.open(journalFile, StandardOpenOption.CREATE,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+        }
+        journalBytes = channel.size();
+        channel.position(journalBytes);
+        compactions++;
+    }
+
+    /**
+     * Waits for a running compaction, writes out pending records and
+     * detaches the journal from the portfolio
+     */
+    @Override
+    public void close() throws IOException {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            try {
+                sync();
+            } finally {
+                closed = true;
+                if (portfolio.getJournal() == this) {
+                    portfolio.setJournal(null);
+                    portfolio.setJournalSequence(lastSequence);
+                }
+                channel.close();
+            }
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // Already shutting down
+        }
+    }
+
+    public Portfolio getPortfolio() {
+        return portfolio;
+    }
+
+    public Path getJournalFile() {
+        return journalFile;
+    }
+
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    // Bytes in the journal, including records not yet written out
+    public synchronized long getSize() {
+        return journalBytes + pending.position();
+    }
+
+    // Records written since the journal was opened
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    public synchronized long getCompactionCount() {
+        return compactions;
+    }
+
+    public boolean isCompacting() {
+        return compacting.get();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Journal: %d bytes | Sequence: %d | Records: %d | Compactions: %d",
+                journalBytes + pending.position(), lastSequence, recordCount, compactions);
+    }
+}
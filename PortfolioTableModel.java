@@ -0,0 +1,275 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Holdings table model read straight from a Portfolio.
+ *
+ * Cells hold raw values - Integer quantities and Double prices, values and
+ * percentages - so renderers do the formatting and a row sorter compares
+ * numbers rather than strings.
+ *
+ * The model remembers the positions it last reported, as primitive columns,
+ * and {@link #refresh} compares the portfolio against them. Only rows and
+ * cells that changed are announced: a price tick repaints one row's price
+ * columns, an added position inserts a row, a removed one deletes it. Only
+ * a reordering (the portfolio was sorted) reloads the whole table.
+ *
+ * Like any Swing model it must only be used on the event thread.
+ */
+public class PortfolioTableModel extends AbstractTableModel {
+
+    public static final int SYMBOL = 0;
+    public static final int NAME = 1;
+    public static final int QUANTITY = 2;
+    public static final int BUY_PRICE = 3;
+    public static final int CURRENT_PRICE = 4;
+    public static final int VALUE = 5;
+    public static final int PROFIT = 6;
+    public static final int PROFIT_PERCENT = 7;
+
+    private static final String[] COLUMNS = {"Symbol", "Name", "Qty", "Buy Price", "Current", "Value", "Profit", "P/L %"};
+    private static final Class<?>[] TYPES = {String.class, String.class, Integer.class,
+            Double.class, Double.class, Double.class, Double.class, Double.class};
+
+    // Above this many separate runs of changed rows, one event covers them all
+    private static final int MAX_UPDATE_EVENTS = 64;
+
+    private final Portfolio portfolio;
+
+    // Positions as last reported to the table
+    private int rows;
+    private String[] symbols = new String[16];
+    private String[] names = new String[16];
+    private int[] quantities = new int[16];
+    private double[] buyPrices = new double[16];
+    private double[] currentPrices = new double[16];
+
+    public PortfolioTableModel(Portfolio portfolio) {
+        this.portfolio = portfolio;
+        refresh();
+    }
+
+    /**
+     * Brings the table up to date with the portfolio, firing events only for
+     * what changed since the last call
+     */
+    public void refresh() {
+        List<Stock> stocks = portfolio.getStocks();
+        int size = stocks.size();
+
+        // Rows still holding the same symbols, in the same order
+        int common = Math.min(rows, size);
+        int same = 0;
+        while (same < common && symbols[same].equals(stocks.get(same).getSymbol())) {
+            same++;
+        }
+
+        if (same < common) {
+            if (size == rows - 1 && isRemoval(stocks, same)) {
+                deleteRow(same);
+                common = size;
+            } else {
+                // Reordered, or several positions replaced at once
+                ensureCapacity(size);
+                for (int row = 0; row < size; row++) {
+                    copy(stocks.get(row), row);
+                }
+                if (size < rows) {
+                    Arrays.fill(symbols, size, rows, null);
+                    Arrays.fill(names, size, rows, null);
+                }
+                rows = size;
+                fireTableDataChanged();
+                return;
+            }
+        }
+
+        updateRows(stocks, common);
+
+        if (size > rows) {
+            int first = rows;
+            ensureCapacity(size);
+            for (int row = first; row < size; row++) {
+                copy(stocks.get(row), row);
+            }
+            rows = size;
+            fireTableRowsInserted(first, size - 1);
+        } else if (size < rows) {
+            int first = size;
+            int last = rows - 1;
+            Arrays.fill(symbols, first, rows, null);
+            Arrays.fill(names, first, rows, null);
+            rows = size;
+            fireTableRowsDeleted(first, last);
+        }
+    }
+
+    // True if the portfolio equals the shown rows with the one at 'row' taken out
+    private boolean isRemoval(List<Stock> stocks, int row) {
+        for (int i = row; i < stocks.size(); i++) {
+            if (!symbols[i + 1].equals(stocks.get(i).getSymbol())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void deleteRow(int row) {
+        int tail = rows - row - 1;
+        System.arraycopy(symbols, row + 1, symbols, row, tail);
+        System.arraycopy(names, row + 1, names, row, tail);
+        System.arraycopy(quantities, row + 1, quantities, row, tail);
+        System.arraycopy(buyPrices, row + 1, buyPrices, row, tail);
+        System.arraycopy(currentPrices, row + 1, currentPrices, row, tail);
+        rows--;
+        symbols[rows] = null;
+        names[rows] = null;
+        fireTableRowsDeleted(row, row);
+    }
+
+    // Compares the first 'count' rows and announces the ones that changed
+    private void updateRows(List<Stock> stocks, int count) {
+        int runs = 0;
+        int firstChanged = -1;
+        int lastChanged = -1;
+        int runStart = -1;
+        boolean priceOnly = true;
+        boolean coalesce = false;
+
+        for (int row = 0; row <= count; row++) {
+            boolean changed = false;
+            if (row < count) {
+                Stock stock = stocks.get(row);
+                boolean quantityChanged = quantities[row] != stock.getQuantity()
+                        || Double.compare(buyPrices[row], stock.getBuyPrice()) != 0
+                        || !Objects.equals(names[row], stock.getName());
+                boolean priceChanged = Double.compare(currentPrices[row], stock.getCurrentPrice()) != 0;
+                changed = quantityChanged || priceChanged;
+                if (changed) {
+                    copy(stock, row);
+                    if (runStart < 0) {
+                        runStart = row;
+                        priceOnly = true;
+                    }
+                    priceOnly &= !quantityChanged;
+                    if (firstChanged < 0) {
+                        firstChanged = row;
+                    }
+                    lastChanged = row;
+                }
+            }
+            if (!changed && runStart >= 0) {
+                // End of a run of changed rows
+                if (++runs > MAX_UPDATE_EVENTS) {
+                    coalesce = true;
+                } else if (!coalesce) {
+                    fireRun(runStart, row - 1, priceOnly);
+                }
+                runStart = -1;
+            }
+        }
+        if (coalesce) {
+            fireTableRowsUpdated(firstChanged, lastChanged);
+        }
+    }
+
+    private void fireRun(int first, int last, boolean priceOnly) {
+        if (first == last && priceOnly) {
+            // Quantity, buy price and name are unchanged
+            fireTableCellUpdated(first, CURRENT_PRICE);
+            fireTableCellUpdated(first, VALUE);
+            fireTableCellUpdated(first, PROFIT);
+            fireTableCellUpdated(first, PROFIT_PERCENT);
+        } else {
+            fireTableRowsUpdated(first, last);
+        }
+    }
+
+    private void copy(Stock stock, int row) {
+        symbols[row] = stock.getSymbol();
+        names[row] = stock.getName();
+        quantities[row] = stock.getQuantity();
+        buyPrices[row] = stock.getBuyPrice();
+        currentPrices[row] = stock.getCurrentPrice();
+    }
+
+    private void ensureCapacity(int size) {
+        if (size > symbols.length) {
+            int capacity = Math.max(size, symbols.length * 2);
+            symbols = Arrays.copyOf(symbols, capacity);
+            names = Arrays.copyOf(names, capacity);
+            quantities = Arrays.copyOf(quantities, capacity);
+            buyPrices = Arrays.copyOf(buyPrices, capacity);
+            currentPrices = Arrays.copyOf(currentPrices, capacity);
+        }
+    }
+
+    /**
+     * @return Symbol shown in a row (model index)
+     */
+    public String getSymbolAt(int row) {
+        checkRow(row);
+        return symbols[row];
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return TYPES[column];
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        checkRow(row);
+        int quantity = quantities[row];
+        switch (column) {
+            case SYMBOL:
+                return symbols[row];
+            case NAME:
+                return names[row];
+            case QUANTITY:
+                return quantity;
+            case BUY_PRICE:
+                return buyPrices[row];
+            case CURRENT_PRICE:
+                return currentPrices[row];
+            case VALUE:
+                return quantity * currentPrices[row];
+            case PROFIT:
+                return quantity * currentPrices[row] - quantity * buyPrices[row];
+            case PROFIT_PERCENT:
+                // Same arithmetic as Stock.getProfitPercentage
+                double investment = quantity * buyPrices[row];
+                return investment == 0 ? 0.0 : ((quantity * currentPrices[row] - investment) / investment) * 100;
+            default:
+                throw new IndexOutOfBoundsException("Column " + column);
+        }
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= rows) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + rows);
+        }
+    }
+}
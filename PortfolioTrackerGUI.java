@@ -103,6 +103,7 @@ public class PortfolioTrackerGUI extends JFrame {
         JButton addButton = new JButton("Add Stock");
         JButton removeButton = new JButton("Remove Stock");
         JButton updateButton = new JButton("Update Price");
+        JButton refreshButton = new JButton("Refresh Prices");
         JButton sortNameButton = new JButton("Sort by Name");
         JButton sortProfitButton = new JButton("Sort by Profit");
         JButton sortValueButton = new JButton("Sort by Value");
@@ -112,6 +113,7 @@ public class PortfolioTrackerGUI extends JFrame {
         addButton.addActionListener(e -> addStock());
         removeButton.addActionListener(e -> removeStock());
         updateButton.addActionListener(e -> updatePrice());
+        refreshButton.addActionListener(e -> refreshPrices(refreshButton));
         sortNameButton.addActionListener(e -> sortByName());
         sortProfitButton.addActionListener(e -> sortByProfit());
         sortValueButton.addActionListener(e -> sortByValue());
@@ -121,6 +123,7 @@ public class PortfolioTrackerGUI extends JFrame {
         panel.add(addButton);
         panel.add(removeButton);
         panel.add(updateButton);
+        panel.add(refreshButton);
         panel.add(sortNameButton);
         panel.add(sortProfitButton);
         panel.add(sortValueButton);
@@ -293,6 +296,42 @@ public class PortfolioTrackerGUI extends JFrame {
         }
     }
     
+    private void refreshPrices(JButton refreshButton) {
+        if (portfolio.getStockCount() == 0) {
+            JOptionPane.showMessageDialog(this, "No stocks in portfolio!", "Warning", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        
+        // Disabled until done, so only one refresh runs at a time
+        refreshButton.setEnabled(false);
+        
+        // The holdings are not thread-safe: only fetch in the background, apply on the event thread
+        java.util.List<String> symbols = portfolio.getSymbols();
+        SwingWorker<PriceRefresher.Result, Void> worker = new SwingWorker<PriceRefresher.Result, Void>() {
+            @Override
+            protected PriceRefresher.Result doInBackground() {
+                return new PriceRefresher().fetch(symbols, null);
+            }
+            
+            @Override
+            protected void done() {
+                refreshButton.setEnabled(true);
+                try {
+                    PriceRefresher.Result result = get();
+                    portfolio.updatePrices(result.getPrices());
+                    updateTable();
+                    updateStatistics();
+                    JOptionPane.showMessageDialog(PortfolioTrackerGUI.this, result.toString());
+                } catch (Exception e) {
+                    JOptionPane.showMessageDialog(PortfolioTrackerGUI.this, "Error refreshing prices: " + e.getMessage(),
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        };
+        
+        worker.execute();
+    }
+    
     private void sortByName() {
         portfolio.sortByName();
         updateTable();
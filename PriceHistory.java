@@ -0,0 +1,1055 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Embedded store of price history: (symbol, timestamp, price) samples.
+ * Every price {@link StockPriceAPI} fetches from the network is recorded
+ * in the default store, so a refresh no longer just overwrites the last
+ * price. Older history can be downloaded into it with {@link HistoryBackfill}.
+ *
+ * Samples collect in memory and are written out on a background thread
+ * as immutable segment files, one per flush, each covering a time range
+ * for many symbols. Segments are memory-mapped for reading and indexed by
+ * symbol, so a range scan only decodes the blocks of that one symbol in
+ * the segments overlapping the range.
+ *
+ * Within a block, timestamps are stored as zigzag varint deltas of their
+ * deltas (regular refreshes cost one byte each) and prices as the XOR
+ * with the previous price's bits, keeping only the non-zero bytes (an
+ * unchanged price costs one byte). Both are byte-aligned rather than
+ * bit-packed, to keep encoding simple and decoding fast.
+ *
+ * A {@link Retention} policy is applied after flushes: segments older
+ * than the maximum age are deleted, older segments are merged into one
+ * per time window, and tiers thin out old samples to one per interval
+ * (the last one in it). Retention works on whole segments, so the
+ * cut-off is as fine as a segment's time range.
+ *
+ * Segment layout (all integers big-endian):
+ * <pre>
+ *   Header
+ *     magic            4 bytes   "PHST"
+ *     version          u16       2
+ *     flags            u16       bit 0: written by a merge
+ *     sequence         i64       increases with every segment written
+ *     resolution       i64       millis between kept samples, 0 for every sample
+ *     minTime          i64       epoch millis
+ *     maxTime          i64
+ *     symbolCount      i32
+ *     replacedCount    i32       segments a merged segment replaces (not in version 1)
+ *   Replaced           replacedCount x sequence i64
+ *   Index              symbolCount x (symbol string, count i32, firstTime i64,
+ *                                     lastTime i64, offset i32, length i32)
+ *   Blocks             first sample as time i64 + price f64, then per sample
+ *                      zigzag varint delta-of-delta, XOR control byte, XOR bytes
+ *   Trailer
+ *     crc32            u32 over every byte before it
+ * </pre>
+ * Strings are encoded as in {@link PortfolioFile}. A merge writes its
+ * segment, listing the sequence numbers of the ones it replaces, before
+ * deleting them; segments left behind by an interrupted merge (or a
+ * failed delete) are deleted on load if a merged segment lists them.
+ * Version 1 merged segments list nothing, so nothing is deleted for them.
+ *
+ * Thread-safe. Timestamps are kept non-decreasing across the store: a
+ * sample older than the newest one recorded (the clock went back) is
+ * stamped with the newest time instead. Imported samples keep their own
+ * timestamps.
+ */
+public class PriceHistory {
+
+    public static final String DEFAULT_DIRECTORY = "price_history";
+
+    public static final int MAGIC = 0x50485354; // "PHST"
+    public static final int VERSION = 2;
+
+    // Buffered samples are written this long after the first of them arrives
+    public static final long DEFAULT_FLUSH_DELAY_MILLIS = 5000;
+    // ...or right away once this many are waiting
+    public static final int FLUSH_SAMPLES = 64 * 1024;
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int FLAG_MERGED = 1;
+    private static final int HEADER_BYTES = 4 + 2 + 2 + 8 + 8 + 8 + 8 + 4 + 4;
+    private static final long[] NONE = {};
+    private static final int INDEX_ENTRY_BYTES = 4 + 8 + 8 + 4 + 4; // Plus the symbol
+    private static final int MAX_SAMPLE_BYTES = 10 + 9;            // Longest varint + control byte + 8 XOR bytes
+
+    private static final long MINUTE_MILLIS = 60 * 1000L;
+    private static final long DAY_MILLIS = 24 * 60 * MINUTE_MILLIS;
+
+    // Segments are merged once they are this old...
+    private static final long MERGE_AFTER_MILLIS = DAY_MILLIS;
+    // ...into one per window of at least a day, or of this many intervals at the segment's resolution
+    private static final int WINDOW_INTERVALS = 256;
+    // Retention runs after a flush at most this often
+    private static final long RETENTION_INTERVAL_MILLIS = 60 * MINUTE_MILLIS;
+
+    /**
+     * Receives samples from a scan, oldest first
+     */
+    public interface SampleConsumer {
+        void accept(long timestamp, double price);
+    }
+
+    /**
+     * From the given age on, keep one sample per interval
+     */
+    public static final class Tier {
+        private final long afterMillis;
+        private final long resolutionMillis;
+
+        public Tier(long afterMillis, long resolutionMillis) {
+            if (afterMillis < 0 || resolutionMillis <= 0) {
+                throw new IllegalArgumentException("Tier needs a non-negative age and a positive resolution");
+            }
+            this.afterMillis = afterMillis;
+            this.resolutionMillis = resolutionMillis;
+        }
+
+        public long getAfterMillis() {
+            return afterMillis;
+        }
+
+        public long getResolutionMillis() {
+            return resolutionMillis;
+        }
+    }
+
+    /**
+     * How long samples are kept, and how finely as they age
+     */
+    public static final class Retention {
+        // Every sample for a week, five-minute samples up to 90 days, daily ones up to 5 years
+        public static final Retention DEFAULT = new Retention(5 * 365 * DAY_MILLIS,
+                new Tier(7 * DAY_MILLIS, 5 * MINUTE_MILLIS),
+                new Tier(90 * DAY_MILLIS, DAY_MILLIS));
+
+        private final long maxAgeMillis;
+        private final Tier[] tiers;
+
+        /**
+         * @param maxAgeMillis Segments entirely older than this are deleted
+         * @param tiers Downsampling steps; resolutions must grow with age
+         */
+        public Retention(long maxAgeMillis, Tier... tiers) {
+            Tier[] sorted = tiers.clone();
+            Arrays.sort(sorted, Comparator.comparingLong(Tier::getAfterMillis));
+            for (int i = 1; i < sorted.length; i++) {
+                if (sorted[i].resolutionMillis < sorted[i - 1].resolutionMillis) {
+                    throw new IllegalArgumentException("Older tiers must not have a finer resolution");
+                }
+            }
+            this.maxAgeMillis = maxAgeMillis;
+            this.tiers = sorted;
+        }
+
+        public long getMaxAgeMillis() {
+            return maxAgeMillis;
+        }
+
+        // Resolution for samples of the given age, 0 for all of them
+        long resolutionAt(long ageMillis) {
+            long resolution = 0;
+            for (Tier tier : tiers) {
+                if (ageMillis >= tier.afterMillis) {
+                    resolution = tier.resolutionMillis;
+                }
+            }
+            return resolution;
+        }
+    }
+
+    /**
+     * Samples of one symbol, e.g. history downloaded for {@link #importSamples}
+     */
+    public static final class Samples {
+        long[] times = new long[8];
+        double[] prices = new double[8];
+        int size;
+
+        public void add(long timestamp, double price) {
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                prices = Arrays.copyOf(prices, size * 2);
+            }
+            times[size] = timestamp;
+            prices[size] = price;
+            size++;
+        }
+
+        void addAll(Samples other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.times[i], other.prices[i]);
+            }
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public long getTimestamp(int index) {
+            return times[index];
+        }
+
+        public double getPrice(int index) {
+            return prices[index];
+        }
+
+        // Stable, so samples with the same time keep their order
+        void sortByTime() {
+            for (int i = 1; i < size; i++) {
+                if (times[i] < times[i - 1]) {
+                    Integer[] order = new Integer[size];
+                    for (int j = 0; j < size; j++) {
+                        order[j] = j;
+                    }
+                    Arrays.sort(order, Comparator.comparingLong(j -> times[j]));
+                    long[] sortedTimes = new long[times.length];
+                    double[] sortedPrices = new double[prices.length];
+                    for (int j = 0; j < size; j++) {
+                        sortedTimes[j] = times[order[j]];
+                        sortedPrices[j] = prices[order[j]];
+                    }
+                    times = sortedTimes;
+                    prices = sortedPrices;
+                    return;
+                }
+            }
+        }
+    }
+
+    // Where a symbol's samples are in a segment
+    private static final class Block {
+        final int count;
+        final long firstTime;
+        final long lastTime;
+        final int offset; // From the start of the file
+        final int length;
+
+        Block(int count, long firstTime, long lastTime, int offset, int length) {
+            this.count = count;
+            this.firstTime = firstTime;
+            this.lastTime = lastTime;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private static final class Segment {
+        final Path file;
+        final long sequence;
+        final long resolution;
+        final long minTime;
+        final long maxTime;
+        final long[] replaced; // Sequences of the segments a merge replaced
+        final Map<String, Block> blocks;
+        final ByteBuffer data; // Mapped file
+        long samples;
+
+        Segment(Path file, long sequence, long resolution, long minTime, long maxTime,
+                long[] replaced, Map<String, Block> blocks, ByteBuffer data) {
+            this.file = file;
+            this.sequence = sequence;
+            this.resolution = resolution;
+            this.minTime = minTime;
+            this.maxTime = maxTime;
+            this.replaced = replaced;
+            this.blocks = blocks;
+            this.data = data;
+            for (Block block : blocks.values()) {
+                samples += block.count;
+            }
+        }
+    }
+
+    private static class Holder {
+        static final PriceHistory DEFAULT = new PriceHistory(Paths.get(DEFAULT_DIRECTORY), Retention.DEFAULT,
+                DEFAULT_FLUSH_DELAY_MILLIS);
+    }
+
+    private final Path directory;
+    private final Retention retention;
+    private final long flushDelayMillis;
+    private final ScheduledExecutorService writer;
+    private final Thread shutdownHook;
+    private final Object writeLock = new Object(); // Held while segment files are written or deleted
+
+    private List<Segment> segments; // In time order; loaded on first access
+    private Map<String, Samples> pending = new LinkedHashMap<>();
+    private int pendingCount;
+    private long lastTime = Long.MIN_VALUE;
+    private long nextSequence = 1;
+    private boolean flushScheduled;
+    private long lastRetention;
+    private final List<Path> undeleted = new ArrayList<>(); // Still mapped elsewhere (Windows); retried later
+
+    // Metrics
+    private long recorded;
+    private long imported;
+    private long flushes;
+    private long merges;
+    private long deletedSegments;
+
+    /**
+     * @param directory Directory for the segment files (need not exist yet)
+     * @param retention What to keep, and how finely
+     * @param flushDelayMillis How long recorded samples wait to be written along with later ones
+     */
+    public PriceHistory(Path directory, Retention retention, long flushDelayMillis) {
+        this.directory = directory;
+        this.retention = retention;
+        this.flushDelayMillis = flushDelayMillis;
+        this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "price-history-writer");
+            t.setDaemon(true);
+            return t;
+        });
+        // Samples still in memory reach the disk when the app exits, unless closed before
+        this.shutdownHook = new Thread(this::flush, "price-history-flush");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * @return Store in {@link #DEFAULT_DIRECTORY} under the working directory, with the default retention
+     */
+    public static PriceHistory getDefault() {
+        return Holder.DEFAULT;
+    }
+
+    /**
+     * Records a price fetched now
+     */
+    public void record(String symbol, double price) {
+        record(symbol, System.currentTimeMillis(), price);
+    }
+
+    /**
+     * Records a sample; it is written to disk in the background
+     *
+     * @param symbol Stock symbol (case and surrounding whitespace ignored)
+     * @param timestamp Epoch millis
+     * @param price Price at that time
+     */
+    public synchronized void record(String symbol, long timestamp, double price) {
+        loaded();
+        lastTime = Math.max(lastTime, timestamp);
+        pending.computeIfAbsent(normalize(symbol), s -> new Samples()).add(lastTime, price);
+        pendingCount++;
+        recorded++;
+        if (writer.isShutdown()) {
+            return;
+        }
+        if (pendingCount >= FLUSH_SAMPLES) {
+            writer.execute(this::flush);
+        } else if (!flushScheduled) {
+            flushScheduled = true;
+            writer.schedule(() -> {
+                synchronized (this) {
+                    flushScheduled = false;
+                }
+                flush();
+            }, flushDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Passes the samples of a symbol within a time range to the consumer,
+     * oldest first. The consumer runs with the store locked and must not
+     * call back into it.
+     *
+     * @param symbol Stock symbol (case and surrounding whitespace ignored)
+     * @param from Start of the range, epoch millis, inclusive
+     * @param to End of the range, exclusive
+     * @return Number of samples passed on
+     */
+    public synchronized int scan(String symbol, long from, long to, SampleConsumer consumer) {
+        String key = normalize(symbol);
+        List<Segment> matching = new ArrayList<>();
+        for (Segment segment : loaded()) {
+            if (segment.maxTime < from || segment.minTime >= to) {
+                continue;
+            }
+            Block block = segment.blocks.get(key);
+            if (block != null && block.lastTime >= from && block.firstTime < to) {
+                matching.add(segment);
+            }
+        }
+        // Imported history can sit in a segment spanning years, so order by the symbol's own samples
+        matching.sort(Comparator.comparingLong(segment -> segment.blocks.get(key).firstTime));
+        int count = 0;
+        for (Segment segment : matching) {
+            count += decode(segment.data, segment.blocks.get(key), from, to, consumer);
+        }
+        Samples series = pending.get(key);
+        if (series != null) {
+            for (int i = 0; i < series.size; i++) {
+                if (series.times[i] >= from && series.times[i] < to) {
+                    consumer.accept(series.times[i], series.prices[i]);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return Time of the symbol's oldest sample, or Long.MAX_VALUE if there is none
+     */
+    public synchronized long getFirstTimestamp(String symbol) {
+        String key = normalize(symbol);
+        long first = Long.MAX_VALUE;
+        for (Segment segment : loaded()) {
+            Block block = segment.blocks.get(key);
+            if (block != null) {
+                first = Math.min(first, block.firstTime);
+            }
+        }
+        Samples series = pending.get(key);
+        if (series != null && series.size > 0) {
+            first = Math.min(first, series.times[0]);
+        }
+        return first;
+    }
+
+    /**
+     * Writes samples obtained elsewhere, e.g. downloaded history, straight
+     * to a segment of their own. Unlike {@link #record}, timestamps are kept
+     * as given and may lie before samples already stored. Import only ranges
+     * not stored yet (see {@link #getFirstTimestamp}); a scan returns both
+     * copies of a sample imported twice.
+     *
+     * @param samples Samples per symbol (case and surrounding whitespace ignored), in any order
+     * @return Number of samples written
+     */
+    public int importSamples(Map<String, Samples> samples) throws IOException {
+        Map<String, Samples> series = new LinkedHashMap<>();
+        int count = 0;
+        for (Map.Entry<String, Samples> entry : samples.entrySet()) {
+            if (entry.getValue().size > 0) {
+                series.computeIfAbsent(normalize(entry.getKey()), s -> new Samples()).addAll(entry.getValue());
+                count += entry.getValue().size;
+            }
+        }
+        if (count == 0) {
+            return 0;
+        }
+        for (Samples s : series.values()) {
+            s.sortByTime();
+        }
+
+        synchronized (writeLock) {
+            long sequence;
+            synchronized (this) {
+                loaded();
+                sequence = nextSequence++;
+            }
+            Segment segment = write(directory, sequence, false, 0, NONE, series);
+            synchronized (this) {
+                segments.add(segment);
+                segments.sort(SEGMENT_ORDER);
+                imported += count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes recorded samples synchronously, then applies the retention
+     * policy if it has not run for a while. Errors are logged; samples that
+     * could not be written are kept for the next attempt.
+     */
+    public void flush() {
+        try {
+            writePending();
+            long now = System.currentTimeMillis();
+            boolean due;
+            synchronized (this) {
+                due = now - lastRetention >= RETENTION_INTERVAL_MILLIS;
+            }
+            if (due) {
+                enforceRetention(now);
+            }
+        } catch (IOException e) {
+            System.err.println("Error saving price history: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes pending samples and stops the background writer
+     */
+    public void close() {
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // Already exiting; the hook flushes as well
+        }
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /**
+     * Deletes segments past the maximum age, and merges and downsamples
+     * segments older than a day according to the retention tiers
+     *
+     * @param now Current time, epoch millis
+     * @return Number of segment files written or deleted
+     */
+    public int enforceRetention(long now) throws IOException {
+        synchronized (writeLock) {
+            List<Segment> current;
+            synchronized (this) {
+                lastRetention = now;
+                current = new ArrayList<>(loaded());
+            }
+            retryDeletes();
+            int changes = 0;
+
+            List<Segment> expired = new ArrayList<>();
+            for (Segment segment : current) {
+                if (segment.maxTime < now - retention.maxAgeMillis) {
+                    expired.add(segment);
+                }
+            }
+            if (!expired.isEmpty()) {
+                replace(expired, null);
+                changes += expired.size();
+                current.removeAll(expired);
+            }
+
+            // Segments old enough to merge, grouped by target resolution and time window.
+            // Segments are in minTime order, but one that starts early can still end
+            // recently (a backfill does); such a segment is left alone and ends the
+            // current group, so a group never spans it.
+            List<Segment> group = new ArrayList<>();
+            long groupResolution = -1;
+            long groupWindow = 0;
+            for (Segment segment : current) {
+                if (segment.maxTime >= now - MERGE_AFTER_MILLIS) {
+                    changes += merge(group, groupResolution);
+                    group.clear();
+                    groupResolution = -1;
+                    continue;
+                }
+                long resolution = Math.max(segment.resolution, retention.resolutionAt(now - segment.maxTime));
+                long window = segment.minTime / windowMillis(resolution);
+                if (resolution != groupResolution || window != groupWindow) {
+                    changes += merge(group, groupResolution);
+                    group.clear();
+                    groupResolution = resolution;
+                    groupWindow = window;
+                }
+                group.add(segment);
+            }
+            changes += merge(group, groupResolution);
+            return changes;
+        }
+    }
+
+    private static long windowMillis(long resolution) {
+        return Math.max(DAY_MILLIS, resolution * WINDOW_INTERVALS);
+    }
+
+    // Rewrites a run of segments as one, thinned to the resolution; 0 if it is already a single segment at it
+    private int merge(List<Segment> group, long resolution) throws IOException {
+        if (group.isEmpty() || (group.size() == 1 && group.get(0).resolution == resolution)) {
+            return 0;
+        }
+        Map<String, Samples> series = new LinkedHashMap<>();
+        for (Segment segment : group) {
+            for (Map.Entry<String, Block> entry : segment.blocks.entrySet()) {
+                Samples merged = series.computeIfAbsent(entry.getKey(), s -> new Samples());
+                decode(segment.data, entry.getValue(), Long.MIN_VALUE, Long.MAX_VALUE, merged::add);
+            }
+        }
+        for (Samples s : series.values()) {
+            s.sortByTime();
+            if (resolution > 0) {
+                downsample(s, resolution);
+            }
+        }
+        long sequence;
+        synchronized (this) {
+            sequence = nextSequence++;
+        }
+        Segment segment = write(directory, sequence, true, resolution, replacedBy(group), series);
+        replace(group, segment);
+        synchronized (this) {
+            merges++;
+        }
+        return group.size() + 1;
+    }
+
+    // The group, plus whatever its merged members replaced that could not be deleted yet
+    private long[] replacedBy(List<Segment> group) {
+        Set<Path> undeletedFiles;
+        synchronized (this) {
+            undeletedFiles = new HashSet<>(undeleted);
+        }
+        List<Long> sequences = new ArrayList<>();
+        for (Segment segment : group) {
+            sequences.add(segment.sequence);
+            for (long sequence : segment.replaced) {
+                if (undeletedFiles.contains(segmentFile(directory, sequence))) {
+                    sequences.add(sequence);
+                }
+            }
+        }
+        long[] replaced = new long[sequences.size()];
+        for (int i = 0; i < replaced.length; i++) {
+            replaced[i] = sequences.get(i);
+        }
+        return replaced;
+    }
+
+    // Keeps the last sample of each interval
+    private static void downsample(Samples series, long resolution) {
+        int kept = 0;
+        for (int i = 0; i < series.size; i++) {
+            boolean lastOfInterval = i + 1 == series.size
+                    || Math.floorDiv(series.times[i + 1], resolution) != Math.floorDiv(series.times[i], resolution);
+            if (lastOfInterval) {
+                series.times[kept] = series.times[i];
+                series.prices[kept] = series.prices[i];
+                kept++;
+            }
+        }
+        series.size = kept;
+    }
+
+    // Swaps segments out of the list (and a new one in), then deletes their files
+    private void replace(List<Segment> old, Segment replacement) {
+        synchronized (this) {
+            segments.removeAll(old);
+            if (replacement != null) {
+                segments.add(replacement);
+                segments.sort(SEGMENT_ORDER);
+            }
+            deletedSegments += old.size();
+        }
+        for (Segment segment : old) {
+            delete(segment.file);
+        }
+    }
+
+    private void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Windows refuses to delete a file that is still mapped
+            synchronized (this) {
+                undeleted.add(file);
+            }
+        }
+    }
+
+    private void retryDeletes() {
+        List<Path> files;
+        synchronized (this) {
+            files = new ArrayList<>(undeleted);
+            undeleted.clear();
+        }
+        for (Path file : files) {
+            delete(file);
+        }
+    }
+
+    private void writePending() throws IOException {
+        synchronized (writeLock) {
+            Map<String, Samples> snapshot;
+            long sequence;
+            synchronized (this) {
+                if (pendingCount == 0) {
+                    return;
+                }
+                loaded();
+                snapshot = pending;
+                pending = new LinkedHashMap<>();
+                pendingCount = 0;
+                sequence = nextSequence++;
+            }
+
+            Segment segment;
+            try {
+                segment = write(directory, sequence, false, 0, NONE, snapshot);
+            } catch (IOException e) {
+                synchronized (this) {
+                    // Put the samples back in front of any recorded meanwhile
+                    for (Map.Entry<String, Samples> entry : pending.entrySet()) {
+                        snapshot.computeIfAbsent(entry.getKey(), s -> new Samples()).addAll(entry.getValue());
+                    }
+                    int count = 0;
+                    for (Samples series : snapshot.values()) {
+                        count += series.size;
+                    }
+                    pending = snapshot;
+                    pendingCount = count;
+                }
+                throw e;
+            }
+            synchronized (this) {
+                segments.add(segment);
+                segments.sort(SEGMENT_ORDER);
+                flushes++;
+            }
+        }
+    }
+
+    private static final Comparator<Segment> SEGMENT_ORDER =
+            Comparator.comparingLong((Segment s) -> s.minTime).thenComparingLong(s -> s.sequence);
+
+    private List<Segment> loaded() {
+        if (segments == null) {
+            segments = new ArrayList<>();
+            try {
+                load();
+            } catch (IOException e) {
+                System.err.println("Error loading price history: " + e.getMessage());
+            }
+        }
+        return segments;
+    }
+
+    private void load() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                try {
+                    Segment segment = read(file);
+                    segments.add(segment);
+                    nextSequence = Math.max(nextSequence, segment.sequence + 1);
+                    lastTime = Math.max(lastTime, segment.maxTime);
+                } catch (IOException e) {
+                    System.err.println("Skipping unreadable price history segment " + file + ": " + e.getMessage());
+                }
+            }
+        }
+        segments.sort(SEGMENT_ORDER);
+
+        // Left over from a merge that was interrupted before it deleted them. Only
+        // the segments a merge lists count: a merged backfill covers years, including
+        // segments recorded meanwhile that it never contained.
+        Set<Long> replaced = new HashSet<>();
+        for (Segment segment : segments) {
+            for (long sequence : segment.replaced) {
+                replaced.add(sequence);
+            }
+        }
+        List<Segment> superseded = new ArrayList<>();
+        for (Segment segment : segments) {
+            if (replaced.contains(segment.sequence)) {
+                superseded.add(segment);
+            }
+        }
+        segments.removeAll(superseded);
+        for (Segment segment : superseded) {
+            delete(segment.file);
+        }
+    }
+
+    // Encoding
+
+    private static Segment write(Path directory, long sequence, boolean merged, long resolution, long[] replaced,
+                                 Map<String, Samples> series) throws IOException {
+        Map<String, byte[]> names = new LinkedHashMap<>();
+        int indexBytes = 0;
+        long maxDataBytes = 0;
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+        for (Map.Entry<String, Samples> entry : series.entrySet()) {
+            Samples s = entry.getValue();
+            if (s.size == 0) {
+                continue;
+            }
+            byte[] name = PortfolioFile.utf8(entry.getKey());
+            names.put(entry.getKey(), name);
+            indexBytes += PortfolioFile.stringBytes(name) + INDEX_ENTRY_BYTES;
+            maxDataBytes += 16 + (long) (s.size - 1) * MAX_SAMPLE_BYTES;
+            minTime = Math.min(minTime, s.times[0]);
+            maxTime = Math.max(maxTime, s.times[s.size - 1]);
+        }
+        int headerBytes = HEADER_BYTES + replaced.length * 8;
+        long maxBytes = headerBytes + indexBytes + maxDataBytes + 4;
+        if (names.isEmpty() || maxBytes > Integer.MAX_VALUE) {
+            throw new IOException(names.isEmpty() ? "No samples to write" : "Too many samples for one segment");
+        }
+
+        // Blocks first, so the index can point at them
+        ByteBuffer buffer = ByteBuffer.allocate((int) maxBytes);
+        int dataStart = headerBytes + indexBytes;
+        buffer.position(dataStart);
+        Map<String, Block> blocks = new LinkedHashMap<>();
+        for (String symbol : names.keySet()) {
+            Samples s = series.get(symbol);
+            int offset = buffer.position();
+            encode(buffer, s);
+            blocks.put(symbol, new Block(s.size, s.times[0], s.times[s.size - 1], offset, buffer.position() - offset));
+        }
+        int end = buffer.position();
+
+        buffer.position(0);
+        buffer.putInt(MAGIC);
+        buffer.putShort((short) VERSION);
+        buffer.putShort((short) (merged ? FLAG_MERGED : 0));
+        buffer.putLong(sequence);
+        buffer.putLong(resolution);
+        buffer.putLong(minTime);
+        buffer.putLong(maxTime);
+        buffer.putInt(names.size());
+        buffer.putInt(replaced.length);
+        for (long replacedSequence : replaced) {
+            buffer.putLong(replacedSequence);
+        }
+        for (Map.Entry<String, byte[]> entry : names.entrySet()) {
+            Block block = blocks.get(entry.getKey());
+            PortfolioFile.putString(buffer, entry.getValue());
+            buffer.putInt(block.count);
+            buffer.putLong(block.firstTime);
+            buffer.putLong(block.lastTime);
+            buffer.putInt(block.offset);
+            buffer.putInt(block.length);
+        }
+
+        buffer.position(end);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, end);
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+
+        Files.createDirectories(directory);
+        Path file = segmentFile(directory, sequence);
+        PortfolioFile.write(buffer, file);
+        return read(file);
+    }
+
+    private static Path segmentFile(Path directory, long sequence) {
+        return directory.resolve(String.format("%016x%s", sequence, SEGMENT_SUFFIX));
+    }
+
+    private static void encode(ByteBuffer out, Samples s) {
+        out.putLong(s.times[0]);
+        long previousBits = Double.doubleToRawLongBits(s.prices[0]);
+        out.putLong(previousBits);
+        long previousTime = s.times[0];
+        long previousDelta = 0;
+        for (int i = 1; i < s.size; i++) {
+            long delta = s.times[i] - previousTime;
+            putVarLong(out, zigzag(delta - previousDelta));
+            previousTime = s.times[i];
+            previousDelta = delta;
+
+            long bits = Double.doubleToRawLongBits(s.prices[i]);
+            long xor = bits ^ previousBits;
+            previousBits = bits;
+            if (xor == 0) {
+                out.put((byte) 0x80); // 8 leading zero bytes, nothing follows
+                continue;
+            }
+            int leading = Long.numberOfLeadingZeros(xor) >>> 3;
+            int trailing = Long.numberOfTrailingZeros(xor) >>> 3;
+            out.put((byte) (leading << 4 | trailing));
+            for (int b = 7 - leading; b >= trailing; b--) {
+                out.put((byte) (xor >>> (b * 8)));
+            }
+        }
+    }
+
+    // Decodes a block, passing on the samples in [from, to)
+    private static int decode(ByteBuffer data, Block block, long from, long to, SampleConsumer consumer) {
+        int p = block.offset;
+        long time = data.getLong(p);
+        long bits = data.getLong(p + 8);
+        p += 16;
+        long delta = 0;
+        int count = 0;
+        for (int i = 0; ; ) {
+            if (time >= to) {
+                break;
+            }
+            if (time >= from) {
+                consumer.accept(time, Double.longBitsToDouble(bits));
+                count++;
+            }
+            if (++i == block.count) {
+                break;
+            }
+
+            // Zigzag varint delta-of-delta
+            long zigzag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data.get(p++);
+                zigzag |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            delta += (zigzag >>> 1) ^ -(zigzag & 1);
+            time += delta;
+
+            int control = data.get(p++) & 0xFF;
+            int leading = control >>> 4;
+            if (leading < 8) {
+                int trailing = control & 0x0F;
+                long xor = 0;
+                for (int n = 8 - leading - trailing; n > 0; n--) {
+                    xor = (xor << 8) | (data.get(p++) & 0xFF);
+                }
+                bits ^= xor << (trailing * 8);
+            }
+        }
+        return count;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static void putVarLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static Segment read(Path file) throws IOException {
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES + 4 || size > Integer.MAX_VALUE) {
+                throw new IOException("Not a price history segment (" + size + " bytes)");
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            data = mapped;
+        }
+        int end = data.limit() - 4;
+        CRC32 crc = new CRC32();
+        crc.update(data.duplicate().position(0).limit(end));
+        if ((int) crc.getValue() != data.getInt(end)) {
+            throw new IOException("Checksum mismatch");
+        }
+
+        ByteBuffer in = data.duplicate();
+        try {
+            if (in.getInt() != MAGIC) {
+                throw new IOException("Not a price history segment");
+            }
+            int version = in.getShort() & 0xFFFF;
+            if (version > VERSION) {
+                throw new IOException("Segment version " + version + " is newer than supported version " + VERSION);
+            }
+            in.getShort(); // Flags
+            long sequence = in.getLong();
+            long resolution = in.getLong();
+            long minTime = in.getLong();
+            long maxTime = in.getLong();
+            int symbolCount = in.getInt();
+            if (symbolCount < 0) {
+                throw new IOException("Corrupt segment index");
+            }
+            long[] replaced = NONE;
+            if (version >= 2) {
+                int replacedCount = in.getInt();
+                if (replacedCount < 0 || replacedCount > in.remaining() / 8) {
+                    throw new IOException("Corrupt segment header");
+                }
+                replaced = new long[replacedCount];
+                for (int i = 0; i < replacedCount; i++) {
+                    replaced[i] = in.getLong();
+                }
+            }
+            Map<String, Block> blocks = new HashMap<>(symbolCount * 2);
+            for (int i = 0; i < symbolCount; i++) {
+                String symbol = readString(in);
+                Block block = new Block(in.getInt(), in.getLong(), in.getLong(), in.getInt(), in.getInt());
+                if (block.count <= 0 || block.offset < in.position() || block.offset + (long) block.length > end) {
+                    throw new IOException("Corrupt segment index");
+                }
+                blocks.put(symbol, block);
+            }
+            return new Segment(file, sequence, resolution, minTime, maxTime, replaced, blocks, data);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated segment index", e);
+        }
+    }
+
+    // PortfolioFile.getString needs a heap buffer; segments are mapped
+    private static String readString(ByteBuffer in) {
+        int length = in.getShort() & 0xFFFF;
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String normalize(String symbol) {
+        return symbol.trim().toUpperCase();
+    }
+
+    // Metrics
+
+    public synchronized int getSegmentCount() {
+        return loaded().size();
+    }
+
+    public synchronized long getRecordedCount() {
+        return recorded;
+    }
+
+    public synchronized long getImportedCount() {
+        return imported;
+    }
+
+    // Samples on disk, after downsampling
+    public synchronized long getStoredSampleCount() {
+        long samples = 0;
+        for (Segment segment : loaded()) {
+            samples += segment.samples;
+        }
+        return samples;
+    }
+
+    public synchronized long getStoredBytes() {
+        long bytes = 0;
+        for (Segment segment : loaded()) {
+            bytes += segment.data.limit();
+        }
+        return bytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long samples = getStoredSampleCount();
+        return String.format("Recorded: %d | Imported: %d | Segments: %d | Stored samples: %d (%.1f bytes each) | Flushes: %d | Merges: %d | Deleted segments: %d",
+                recorded, imported, loaded().size(), samples, samples == 0 ? 0.0 : (double) getStoredBytes() / samples,
+                flushes, merges, deletedSegments);
+    }
+}
@@ -0,0 +1,259 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrent price refresh engine.
+ * Symbols are batched into multi-symbol quote requests (see
+ * {@link StockPriceAPI#fetchCurrentPrices}) and the batches are fetched in
+ * parallel with a bounded number of requests in flight and an overall
+ * deadline, so one slow or dead request no longer stalls the rest of the
+ * portfolio.
+ */
+public class PriceRefresher {
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 8;
+    public static final long DEFAULT_DEADLINE_MILLIS = 60000;
+
+    /**
+     * Receives per-symbol results as they complete.
+     * Callbacks run on the thread that called {@link #refresh}, one at a time.
+     */
+    public interface Listener {
+        /**
+         * @param symbol Symbol that was fetched
+         * @param price New price, or -1 if the fetch failed
+         * @param completed Number of symbols finished so far
+         * @param total Number of distinct symbols in this refresh
+         */
+        void onResult(String symbol, double price, int completed, int total);
+    }
+
+    /**
+     * Summary of a finished refresh
+     */
+    public static class Result {
+        private final int total;
+        private final int updated;
+        private final int failed;
+        private final int timedOut;
+        private final Map<String, Double> prices;
+
+        Result(int total, int updated, int failed, int timedOut, Map<String, Double> prices) {
+            this.total = total;
+            this.updated = updated;
+            this.failed = failed;
+            this.timedOut = timedOut;
+            this.prices = Collections.unmodifiableMap(prices);
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public int getUpdated() {
+            return updated;
+        }
+
+        public int getFailed() {
+            return failed;
+        }
+
+        public int getTimedOut() {
+            return timedOut;
+        }
+
+        /**
+         * @return Upper-cased symbol to the price fetched for it
+         */
+        public Map<String, Double> getPrices() {
+            return prices;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Updated %d of %d (%d failed, %d timed out)", updated, total, failed, timedOut);
+        }
+    }
+
+    private final int maxInFlight;
+    private final long deadlineMillis;
+
+    public PriceRefresher() {
+        this(DEFAULT_MAX_IN_FLIGHT, DEFAULT_DEADLINE_MILLIS);
+    }
+
+    /**
+     * @param maxInFlight Maximum number of batch quote requests running at once
+     * @param deadlineMillis Overall time budget for one refresh
+     */
+    public PriceRefresher(int maxInFlight, long deadlineMillis) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be positive");
+        }
+        if (deadlineMillis <= 0) {
+            throw new IllegalArgumentException("deadlineMillis must be positive");
+        }
+        this.maxInFlight = maxInFlight;
+        this.deadlineMillis = deadlineMillis;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public long getDeadlineMillis() {
+        return deadlineMillis;
+    }
+
+    /**
+     * Refreshes every stock in the portfolio. The prices are written into
+     * the portfolio from the calling thread, so this must run on the thread
+     * that owns the portfolio; a GUI fetches with {@link #fetch} in the
+     * background and applies the result on the event thread instead.
+     *
+     * @param portfolio Portfolio to update
+     * @param listener Optional per-symbol callback (may be null)
+     * @return Summary of the refresh
+     */
+    public Result refresh(Portfolio portfolio, Listener listener) {
+        // Prices are applied by symbol straight into the portfolio's columns
+        return refresh(portfolio.getSymbols(), portfolio::updatePrice, listener);
+    }
+
+    /**
+     * Fetches current prices without applying them anywhere; they are
+     * returned in {@link Result#getPrices}. Safe to call from any thread.
+     *
+     * @param symbols Symbols to fetch (duplicates and case ignored)
+     * @param listener Optional per-symbol callback (may be null)
+     * @return Summary of the fetch, with the prices
+     */
+    public Result fetch(Collection<String> symbols, Listener listener) {
+        return refresh(symbols, (symbol, price) -> true, listener);
+    }
+
+    /**
+     * Fetches current prices for the given stocks and applies them.
+     * Each distinct symbol is fetched once; holdings sharing a symbol all
+     * receive the new price. Listener callbacks fire for every symbol of a
+     * batch as soon as that batch completes. Blocks until every batch has
+     * finished or the deadline has passed, whichever comes first.
+     *
+     * @param stocks Stocks to update
+     * @param listener Optional per-symbol callback (may be null)
+     * @return Summary of the refresh
+     */
+    public Result refresh(Collection<Stock> stocks, Listener listener) {
+        Map<String, List<Stock>> bySymbol = new LinkedHashMap<>();
+        for (Stock stock : stocks) {
+            bySymbol.computeIfAbsent(stock.getSymbol().trim().toUpperCase(), k -> new ArrayList<>()).add(stock);
+        }
+
+        return refresh(bySymbol.keySet(), (symbol, price) -> {
+            for (Stock stock : bySymbol.get(symbol)) {
+                stock.setCurrentPrice(price);
+            }
+            return true;
+        }, listener);
+    }
+
+    // Applies a fetched price; returns false if nothing holds the symbol any more
+    private interface PriceSink {
+        boolean apply(String symbol, double price);
+    }
+
+    private Result refresh(Collection<String> symbols, PriceSink sink, Listener listener) {
+        Map<String, Double> prices = new LinkedHashMap<>();
+        List<List<String>> chunks = StockPriceAPI.splitIntoChunks(symbols);
+        int total = 0;
+        for (List<String> chunk : chunks) {
+            total += chunk.size();
+        }
+        if (total == 0) {
+            return new Result(0, 0, 0, 0, prices);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(maxInFlight, chunks.size()), daemonThreads());
+        CompletionService<Map.Entry<List<String>, Map<String, Double>>> completion = new ExecutorCompletionService<>(executor);
+        for (List<String> chunk : chunks) {
+            completion.submit(() -> Map.entry(chunk, fetchQuietly(chunk)));
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+        int pendingChunks = chunks.size();
+        int completed = 0;
+        int updated = 0;
+        int failed = 0;
+
+        try {
+            while (pendingChunks > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) break;
+
+                Future<Map.Entry<List<String>, Map<String, Double>>> done = completion.poll(remaining, TimeUnit.NANOSECONDS);
+                if (done == null) break; // Deadline reached
+                pendingChunks--;
+
+                Map.Entry<List<String>, Map<String, Double>> result = done.get();
+                for (String symbol : result.getKey()) {
+                    completed++;
+                    Double price = result.getValue().get(symbol);
+
+                    if (price != null && price > 0) {
+                        prices.put(symbol, price);
+                    }
+                    if (price != null && price > 0 && sink.apply(symbol, price)) {
+                        updated++;
+                    } else {
+                        failed++;
+                    }
+
+                    if (listener != null) {
+                        listener.onResult(symbol, price != null ? price : -1, completed, total);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // fetchQuietly never throws, so this only happens on a programming error
+            System.err.println("Refresh task failed: " + e.getCause());
+        } finally {
+            // Abandon whatever is still running once the deadline has passed
+            executor.shutdownNow();
+        }
+
+        return new Result(total, updated, failed, total - completed, prices);
+    }
+
+    private static Map<String, Double> fetchQuietly(List<String> chunk) {
+        try {
+            return StockPriceAPI.fetchPriceChunk(chunk);
+        } catch (RuntimeException e) {
+            System.err.println("Error fetching prices for " + chunk + ": " + e.getMessage());
+            return Collections.emptyMap();
+        }
+    }
+
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, "price-refresh-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * Snapshot of a quote as returned by the chart endpoint
+ */
+public class Quote {
+    private final String symbol;
+    private final double price;
+    private final double previousClose;
+    private final String currency;
+    private final long timestamp;
+    
+    /**
+     * @param symbol Stock symbol
+     * @param price Last traded price
+     * @param previousClose Previous session close, or -1 if unknown
+     * @param currency ISO currency code (e.g. "INR"), or null if unknown
+     * @param timestamp Time of the last trade in epoch seconds, or 0 if unknown
+     */
+    public Quote(String symbol, double price, double previousClose, String currency, long timestamp) {
+        this.symbol = symbol;
+        this.price = price;
+        this.previousClose = previousClose;
+        this.currency = currency;
+        this.timestamp = timestamp;
+    }
+    
+    public String getSymbol() {
+        return symbol;
+    }
+    
+    public double getPrice() {
+        return price;
+    }
+    
+    public double getPreviousClose() {
+        return previousClose;
+    }
+    
+    public String getCurrency() {
+        return currency;
+    }
+    
+    public long getTimestamp() {
+        return timestamp;
+    }
+    
+    // Change since previous close
+    public double getChange() {
+        if (previousClose <= 0) return 0;
+        return price - previousClose;
+    }
+    
+    public double getChangePercentage() {
+        if (previousClose <= 0) return 0;
+        return (getChange() / previousClose) * 100;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("%s %.2f %s (%.2f%%)", symbol, price, currency != null ? currency : "", getChangePercentage());
+    }
+}
@@ -0,0 +1,132 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-process cache for quote data keyed by stock symbol.
+ * Entries expire after a configurable time-to-live and the least recently
+ * used entry is evicted once the cache is full. Hit and miss counters are
+ * kept so the effectiveness of the cache can be checked at runtime.
+ *
+ * @param <V> Cached value type (e.g. price or company name)
+ */
+public class QuoteCache<V> {
+
+    private static class Entry<V> {
+        final V value;
+        final long storedAt;
+
+        Entry(V value, long storedAt) {
+            this.value = value;
+            this.storedAt = storedAt;
+        }
+    }
+
+    private final LinkedHashMap<String, Entry<V>> entries;
+    private final int maxEntries;
+    private long ttlMillis;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param ttlMillis How long an entry stays fresh
+     * @param maxEntries Maximum number of symbols kept before LRU eviction
+     */
+    public QuoteCache(long ttlMillis, int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+        // Access order so iteration starts at the least recently used entry
+        this.entries = new LinkedHashMap<String, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+                if (size() > QuoteCache.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached value if it is still fresh
+     *
+     * @param symbol Stock symbol
+     * @return Cached value, or null on a miss or an expired entry
+     */
+    public synchronized V get(String symbol) {
+        String key = normalize(symbol);
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        if (System.currentTimeMillis() - entry.storedAt > ttlMillis) {
+            entries.remove(key);
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    public synchronized void put(String symbol, V value) {
+        if (value == null) return;
+        entries.put(normalize(symbol), new Entry<>(value, System.currentTimeMillis()));
+    }
+
+    public synchronized void invalidate(String symbol) {
+        entries.remove(normalize(symbol));
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized void setTtlMillis(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    public synchronized long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        if (lookups == 0) return 0;
+        return (hits * 100.0) / lookups;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d entries | Hits: %d | Misses: %d (%.1f%% hit rate) | Evictions: %d",
+                entries.size(), hits, misses, getHitRate(), evictions);
+    }
+
+    private static String normalize(String symbol) {
+        return symbol.trim().toUpperCase();
+    }
+}
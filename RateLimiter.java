@@ -0,0 +1,144 @@
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adaptive token-bucket rate limiter shared by all quote requests.
+ * Tokens refill continuously at the current rate up to the burst size.
+ * When the server throttles us the rate is halved; every successful
+ * request then nudges it back up towards the configured maximum.
+ */
+public class RateLimiter {
+
+    private final double maxRate;
+    private final double minRate;
+    private final double burst;
+    private double rate; // Tokens per second
+    private double tokens;
+    private long lastRefill;
+    private long lastCut;
+
+    // Metrics
+    private long acquired;
+    private long delayed;
+    private long waitedNanos;
+    private long throttleEvents;
+
+    /**
+     * @param maxRate Requests per second allowed while the server is happy
+     * @param minRate Floor the rate never drops below when throttled
+     * @param burst Requests that may be sent back to back after an idle period
+     */
+    public RateLimiter(double maxRate, double minRate, int burst) {
+        if (maxRate <= 0 || minRate <= 0 || minRate > maxRate) {
+            throw new IllegalArgumentException("Rates must be positive and minRate <= maxRate");
+        }
+        if (burst <= 0) {
+            throw new IllegalArgumentException("burst must be positive");
+        }
+        this.maxRate = maxRate;
+        this.minRate = minRate;
+        this.burst = burst;
+        this.rate = maxRate;
+        this.tokens = burst;
+        this.lastRefill = System.nanoTime();
+        this.lastCut = lastRefill - 1_000_000_000L;
+    }
+
+    /**
+     * Blocks until a request may be sent
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos = reserve();
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Takes a token without blocking. The token may be borrowed from the
+     * future, in which case the caller must wait the returned time before
+     * sending (used by the asynchronous request path).
+     *
+     * @return Nanoseconds to wait before sending, 0 if the request may go now
+     */
+    public synchronized long reserve() {
+        refill();
+        acquired++;
+        tokens -= 1;
+        if (tokens >= 0) {
+            return 0;
+        }
+        long waitNanos = (long) (-tokens / rate * 1_000_000_000L);
+        delayed++;
+        waitedNanos += waitNanos;
+        return waitNanos;
+    }
+
+    /**
+     * Called when the server answered 429; halves the rate and empties the bucket.
+     * Responses to requests already in flight tend to arrive together, so the
+     * rate is cut at most once per second.
+     */
+    public synchronized void onThrottled() {
+        refill();
+        throttleEvents++;
+        long now = System.nanoTime();
+        if (now - lastCut < 1_000_000_000L) {
+            return;
+        }
+        lastCut = now;
+        rate = Math.max(minRate, rate / 2);
+        tokens = Math.min(tokens, 0);
+    }
+
+    /**
+     * Called after a successful request; recovers the rate additively
+     */
+    public synchronized void onSuccess() {
+        if (rate < maxRate) {
+            refill();
+            rate = Math.min(maxRate, rate + maxRate / 50);
+        }
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefill) / 1_000_000_000.0 * rate);
+        lastRefill = now;
+    }
+
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    public double getMaxRate() {
+        return maxRate;
+    }
+
+    public synchronized double getAvailableTokens() {
+        refill();
+        return Math.max(0, tokens);
+    }
+
+    public synchronized long getAcquired() {
+        return acquired;
+    }
+
+    public synchronized long getDelayed() {
+        return delayed;
+    }
+
+    public synchronized long getWaitedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(waitedNanos);
+    }
+
+    public synchronized long getThrottleEvents() {
+        return throttleEvents;
+    }
+
+    @Override
+    public synchronized String toString() {
+        refill();
+        return String.format("Rate: %.2f/%.2f req/s | Tokens: %.1f | Requests: %d | Delayed: %d (%d ms) | Throttled: %d",
+                rate, maxRate, Math.max(0, tokens), acquired, delayed, TimeUnit.NANOSECONDS.toMillis(waitedNanos), throttleEvents);
+    }
+}
@@ -0,0 +1,270 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saves a portfolio on a background thread.
+ *
+ * {@link #requestSave} is called on the thread that changes the portfolio
+ * (the Swing event thread in the GUI) and only captures what needs saving:
+ * nothing at all if the portfolio's modification count has not moved since
+ * the last save, otherwise an in-memory encoding of the portfolio. With a
+ * {@link PortfolioJournal} attached the changes are already buffered as
+ * journal records, so nothing is encoded and the write is a journal append.
+ *
+ * The write happens on a single writer thread a short moment later, so a
+ * burst of requests (an import, a refresh followed by XP awards) turns
+ * into one write of the latest state. Snapshots go through
+ * {@link PortfolioFile#write(ByteBuffer, Path)}: temp file, fsync, atomic rename.
+ */
+public class SaveService implements Closeable {
+
+    public static final long DEFAULT_COALESCE_MILLIS = 250;
+
+    /**
+     * Told about the outcome of requested saves, on the writer thread
+     */
+    public interface Listener {
+        void saveCompleted();
+
+        void saveFailed(IOException e);
+    }
+
+    private final Portfolio portfolio;
+    private final PortfolioJournal journal;
+    private final Path file;
+    private final long coalesceMillis;
+    private final ScheduledExecutorService writer;
+    private volatile Listener listener;
+
+    // Latest captured state, waiting for the writer
+    private boolean pending;
+    private ByteBuffer pendingSnapshot;
+    private boolean scheduled;
+    private long capturedModCount;
+    private long savedModCount;
+
+    // Metrics
+    private long requests;
+    private long skipped;
+    private long coalesced;
+    private long writes;
+
+    /**
+     * @param portfolio Portfolio to save
+     * @param journal Journal attached to the portfolio, or null to write full snapshots
+     * @param file Snapshot file
+     */
+    public SaveService(Portfolio portfolio, PortfolioJournal journal, Path file) {
+        this(portfolio, journal, file, DEFAULT_COALESCE_MILLIS);
+    }
+
+    /**
+     * @param portfolio Portfolio to save
+     * @param journal Journal attached to the portfolio, or null to write full snapshots
+     * @param file Snapshot file
+     * @param coalesceMillis How long a requested save waits for further requests
+     */
+    public SaveService(Portfolio portfolio, PortfolioJournal journal, Path file, long coalesceMillis) {
+        this.portfolio = portfolio;
+        this.journal = journal;
+        this.file = file;
+        this.coalesceMillis = coalesceMillis;
+        this.capturedModCount = portfolio.getModCount();
+        this.savedModCount = capturedModCount;
+        this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "portfolio-save");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Schedules a save of the portfolio's current state. Must be called on
+     * the thread that changes the portfolio.
+     *
+     * @return false if nothing changed since the last save, so nothing was scheduled
+     */
+    public boolean requestSave() {
+        synchronized (this) {
+            requests++;
+        }
+        if (!capture()) {
+            synchronized (this) {
+                skipped++;
+            }
+            return false;
+        }
+        if (journal != null && journal.needsCompaction()) {
+            journal.compact();
+        }
+
+        synchronized (this) {
+            if (scheduled) {
+                coalesced++;
+                return true;
+            }
+            scheduled = true;
+        }
+        writer.schedule(this::writeScheduled, coalesceMillis, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    /**
+     * Saves the current state and waits for it to reach the disk. With a
+     * journal attached the journal is also folded into a new snapshot (in
+     * the background; the changes are already durable at that point).
+     * Must be called on the thread that changes the portfolio.
+     */
+    public void saveNow() throws IOException {
+        writeNow();
+        if (journal != null && journal.getSize() > 0) {
+            journal.compact();
+        }
+    }
+
+    /**
+     * Writes anything not yet saved and stops the writer thread
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            writeNow();
+        } finally {
+            writer.shutdown();
+        }
+    }
+
+    // Captures the current state unless it was captured already; false if unchanged
+    private boolean capture() {
+        long modCount = portfolio.getModCount();
+        synchronized (this) {
+            if (modCount == capturedModCount) {
+                return false;
+            }
+        }
+        // Encoding is an in-memory copy; it has to happen here because the
+        // portfolio is not safe to read from the writer thread
+        ByteBuffer snapshot = journal == null ? PortfolioFile.encode(portfolio) : null;
+        synchronized (this) {
+            capturedModCount = modCount;
+            pendingSnapshot = snapshot;
+            pending = true;
+        }
+        return true;
+    }
+
+    private void writeNow() throws IOException {
+        capture();
+        try {
+            writer.submit(() -> {
+                write();
+                return null;
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while saving", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Save failed: " + e.getCause(), e.getCause());
+        }
+    }
+
+    private void writeScheduled() {
+        synchronized (this) {
+            scheduled = false;
+        }
+        Listener listener = this.listener;
+        try {
+            if (write() && listener != null) {
+                listener.saveCompleted();
+            }
+        } catch (IOException e) {
+            if (listener != null) {
+                listener.saveFailed(e);
+            } else {
+                System.err.println("Error saving portfolio: " + e.getMessage());
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Error saving portfolio: " + e);
+        }
+    }
+
+    // Runs on the writer thread; false if there was nothing to write
+    private boolean write() throws IOException {
+        ByteBuffer snapshot;
+        long modCount;
+        synchronized (this) {
+            if (!pending) {
+                return false;
+            }
+            snapshot = pendingSnapshot;
+            modCount = capturedModCount;
+            pending = false;
+            pendingSnapshot = null;
+        }
+
+        try {
+            if (journal != null) {
+                journal.sync();
+            } else {
+                PortfolioFile.write(snapshot, file);
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                if (capturedModCount == modCount) {
+                    capturedModCount = savedModCount; // Let the next request capture again
+                }
+            }
+            throw e;
+        }
+
+        synchronized (this) {
+            savedModCount = modCount;
+            writes++;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the portfolio changed since the last completed save
+     */
+    public synchronized boolean isDirty() {
+        return portfolio.getModCount() != savedModCount;
+    }
+
+    public synchronized long getRequestCount() {
+        return requests;
+    }
+
+    // Requests dropped because nothing had changed
+    public synchronized long getSkippedCount() {
+        return skipped;
+    }
+
+    // Requests merged into a write that was already scheduled
+    public synchronized long getCoalescedCount() {
+        return coalesced;
+    }
+
+    public synchronized long getWriteCount() {
+        return writes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Save requests: %d | Skipped (unchanged): %d | Coalesced: %d | Writes: %d",
+                requests, skipped, coalesced, writes);
+    }
+}
@@ -1,3 +1,5 @@
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 
 public class Stock implements Serializable, Comparable<Stock> {
@@ -9,6 +11,12 @@ public class Stock implements Serializable, Comparable<Stock> {
     private double buyPrice;
     private double currentPrice;
     
+    // While held by a portfolio, quantity and prices live in its HoldingsTable
+    // under this id and the fields above are only refreshed when the stock is
+    // detached or serialized
+    private transient HoldingsTable table;
+    private transient int id;
+    
     public Stock(String name, String symbol, int quantity, double buyPrice, double currentPrice) {
         this.name = name;
         this.symbol = symbol;
@@ -27,33 +35,54 @@ public class Stock implements Serializable, Comparable<Stock> {
     }
     
     public int getQuantity() {
-        return quantity;
+        return table != null ? table.quantityOf(id) : quantity;
     }
     
     public double getBuyPrice() {
-        return buyPrice;
+        return table != null ? table.buyPriceOf(id) : buyPrice;
     }
     
     public double getCurrentPrice() {
-        return currentPrice;
+        return table != null ? table.currentPriceOf(id) : currentPrice;
     }
     
     // Setters
     public void setCurrentPrice(double currentPrice) {
-        this.currentPrice = currentPrice;
+        if (table != null) {
+            table.setCurrentPrice(id, currentPrice);
+        } else {
+            this.currentPrice = currentPrice;
+        }
     }
     
     public void setQuantity(int quantity) {
+        if (table != null) {
+            table.setQuantity(id, quantity);
+        } else {
+            this.quantity = quantity;
+        }
+    }
+    
+    void bind(HoldingsTable table, int id) {
+        this.table = table;
+        this.id = id;
+    }
+    
+    // Called when the position is removed; keeps its last values
+    void unbind(int quantity, double buyPrice, double currentPrice) {
         this.quantity = quantity;
+        this.buyPrice = buyPrice;
+        this.currentPrice = currentPrice;
+        this.table = null;
     }
     
     // Calculated values
     public double getTotalValue() {
-        return quantity * currentPrice;
+        return getQuantity() * getCurrentPrice();
     }
     
     public double getTotalInvestment() {
-        return quantity * buyPrice;
+        return getQuantity() * getBuyPrice();
     }
     
     public double getProfit() {
@@ -65,6 +94,16 @@ public class Stock implements Serializable, Comparable<Stock> {
         return (getProfit() / getTotalInvestment()) * 100;
     }
     
+    // Write the current values, not the copy from when the stock was bound
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        if (table != null) {
+            quantity = table.quantityOf(id);
+            buyPrice = table.buyPriceOf(id);
+            currentPrice = table.currentPriceOf(id);
+        }
+        out.defaultWriteObject();
+    }
+    
     @Override
     public int compareTo(Stock other) {
         return this.symbol.compareTo(other.symbol);
@@ -73,7 +112,7 @@ public class Stock implements Serializable, Comparable<Stock> {
     @Override
     public String toString() {
         return String.format("%s (%s) - Qty: %d | Buy: ₹%.2f | Current: ₹%.2f | Profit: ₹%.2f (%.2f%%)",
-                name, symbol, quantity, buyPrice, currentPrice, getProfit(), getProfitPercentage());
+                name, symbol, getQuantity(), getBuyPrice(), getCurrentPrice(), getProfit(), getProfitPercentage());
     }
 }
 
@@ -1,9 +1,27 @@
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
 import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Real-time stock price integration using Yahoo Finance API
@@ -12,109 +30,527 @@ import java.nio.charset.StandardCharsets;
 public class StockPriceAPI {
     
     // Using Yahoo Finance query API (free, no API key needed)
-    private static final String QUOTE_URL = "https://query1.finance.yahoo.com/v8/finance/chart/%s?interval=1d&range=1d";
-    private static final String SEARCH_URL = "https://query1.finance.yahoo.com/v1/finance/search?q=%s&quotesCount=1";
+    public static final String DEFAULT_BASE_URL = "https://query1.finance.yahoo.com";
+    private static final String QUOTE_PATH = "/v8/finance/chart/%s?interval=1d&range=1d";
+    private static final String HISTORY_PATH = "/v8/finance/chart/%s?interval=%s&period1=%d&period2=%d&includePrePost=false";
+    private static final String SEARCH_PATH = "/v1/finance/search?q=%s&quotesCount=1";
+    private static final String BATCH_QUOTE_PATH = "/v7/finance/quote?symbols=%s";
+    
+    // Any server speaking the Yahoo endpoints can stand in, e.g. LocalQuoteServer
+    private static volatile String baseUrl = System.getProperty("stockapi.baseUrl", DEFAULT_BASE_URL);
+    
+    // Largest symbol list the quote endpoint accepts in one request
+    public static final int MAX_SYMBOLS_PER_REQUEST = 50;
+    
+    // Prices go stale within seconds, company names practically never
+    private static final QuoteCache<Double> PRICE_CACHE = new QuoteCache<>(30 * 1000L, 2000);
+    private static final QuoteCache<String> NAME_CACHE = new QuoteCache<>(7 * 24 * 60 * 60 * 1000L, 5000);
+    
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+    
+    // Retry policy for 429 and 5xx responses (jittered exponential backoff)
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long BACKOFF_BASE_MILLIS = 500;
+    private static final long BACKOFF_MAX_MILLIS = 8000;
+    
+    // Shared by every request so concurrent refreshes cannot burst past Yahoo's limits
+    private static final RateLimiter RATE_LIMITER = new RateLimiter(10, 1, 10);
+    
+    // Symbols that keep failing are skipped for 5 minutes after 3 failures in a row
+    private static final CircuitBreaker CIRCUIT_BREAKER = new CircuitBreaker(3, 5 * 60 * 1000L);
+    private static final AtomicLong RETRIES = new AtomicLong();
+    
+    // One shared client so connections (and HTTP/2 streams) are reused across calls
+    private static final HttpClient HTTP_CLIENT = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(TIMEOUT)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+    
+    // Streaming extractors are not thread-safe, so each thread keeps its own
+    private static final ThreadLocal<JsonFieldExtractor> CHART_META = ThreadLocal.withInitial(() ->
+            new JsonFieldExtractor("meta", "regularMarketPrice", "previousClose", "chartPreviousClose",
+                    "currency", "regularMarketTime"));
+    private static final ThreadLocal<JsonFieldExtractor> CHART_TIMESTAMPS = ThreadLocal.withInitial(() ->
+            new JsonFieldExtractor("result", "timestamp"));
+    private static final ThreadLocal<JsonFieldExtractor> CHART_CLOSES = ThreadLocal.withInitial(() ->
+            new JsonFieldExtractor("quote", "close"));
+    private static final ThreadLocal<JsonFieldExtractor> BATCH_RESULT = ThreadLocal.withInitial(() ->
+            new JsonFieldExtractor("result", "symbol", "regularMarketPrice"));
+    private static final ThreadLocal<JsonFieldExtractor> SEARCH_QUOTE = ThreadLocal.withInitial(() ->
+            new JsonFieldExtractor("quotes", "longname", "shortname"));
+    
+    // Reads a decoded response body into a result
+    private interface BodyReader<T> {
+        T read(InputStream body) throws IOException;
+    }
     
     /**
-     * Fetches the current stock price from Yahoo Finance API
+     * Fetches the current stock price from Yahoo Finance API.
+     * Served from the price cache when a fresh quote is available.
+     * Symbols whose circuit breaker is open are not requested.
      * 
      * @param symbol Stock symbol (e.g., "AAPL", "GOOGL")
      * @return Current stock price, or -1 if error occurs
      */
     public static double fetchCurrentPrice(String symbol) {
+        Double cached = PRICE_CACHE.get(symbol);
+        if (cached != null) {
+            return cached;
+        }
+        if (!CIRCUIT_BREAKER.allowRequest(symbol)) {
+            return -1;
+        }
+        
+        double price = requestPrice(symbol);
+        if (price > 0) {
+            rememberPrice(symbol, price);
+        }
+        return price;
+    }
+    
+    private static double requestPrice(String symbol) {
+        Quote quote = requestQuote(symbol);
+        return quote != null ? quote.getPrice() : -1; // Return -1 if error occurs
+    }
+    
+    /**
+     * Fetches the full quote (price, previous close, currency and trade time)
+     * for a symbol. Always goes to the network; the fetched price also
+     * refreshes the price cache.
+     * 
+     * @param symbol Stock symbol (e.g., "TCS.NS")
+     * @return Quote, or null if error occurs
+     */
+    public static Quote fetchQuote(String symbol) {
+        if (!CIRCUIT_BREAKER.allowRequest(symbol)) {
+            return null;
+        }
+        Quote quote = requestQuote(symbol);
+        if (quote != null) {
+            rememberPrice(symbol, quote.getPrice());
+        }
+        return quote;
+    }
+    
+    // Callers check the circuit breaker; this records the outcome
+    private static Quote requestQuote(String symbol) {
         try {
-            String urlString = String.format(QUOTE_URL, symbol);
-            URL url = new URL(urlString);
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("GET");
-            conn.setRequestProperty("User-Agent", "Mozilla/5.0");
-            conn.setConnectTimeout(10000);
-            conn.setReadTimeout(10000);
-            
-            int responseCode = conn.getResponseCode();
-            if (responseCode == 200) {
-                BufferedReader in = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-                String inputLine;
-                StringBuilder response = new StringBuilder();
-                
-                while ((inputLine = in.readLine()) != null) {
-                    response.append(inputLine);
-                }
-                in.close();
-                
-                String jsonResponse = response.toString();
-                double price = parseYahooPrice(jsonResponse);
-                
-                return price;
-            }
+            Quote quote = httpGet(quoteUrl(symbol), body -> parseQuote(symbol, body));
+            recordOutcome(symbol, quote != null);
+            rememberCurrency(quote);
+            return quote;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
             System.err.println("Error fetching price for " + symbol + ": " + e.getMessage());
         }
         
-        return -1; // Return -1 if error occurs
+        return null;
+    }
+    
+    /**
+     * Asynchronous variant of {@link #fetchCurrentPrice}.
+     * The request is sent without blocking the calling thread.
+     * 
+     * @param symbol Stock symbol (e.g., "TCS.NS")
+     * @return Future completing with the price, or -1 if an error occurs
+     */
+    public static CompletableFuture<Double> fetchCurrentPriceAsync(String symbol) {
+        Double cached = PRICE_CACHE.get(symbol);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        if (!CIRCUIT_BREAKER.allowRequest(symbol)) {
+            return CompletableFuture.completedFuture(-1.0);
+        }
+        
+        return requestPriceAsync(symbol).thenApply(price -> {
+            if (price > 0) {
+                rememberPrice(symbol, price);
+            }
+            return price;
+        });
+    }
+    
+    private static CompletableFuture<Double> requestPriceAsync(String symbol) {
+        return httpGetAsync(quoteUrl(symbol), body -> parseQuote(symbol, body))
+                .thenApply(quote -> {
+                    recordOutcome(symbol, quote != null);
+                    rememberCurrency(quote);
+                    return quote != null ? quote.getPrice() : -1;
+                })
+                .exceptionally(e -> {
+                    System.err.println("Error fetching price for " + symbol + ": " + e.getMessage());
+                    return -1.0;
+                });
+    }
+    
+    private static String quoteUrl(String symbol) {
+        return baseUrl + String.format(QUOTE_PATH, URLEncoder.encode(symbol.trim(), StandardCharsets.UTF_8));
     }
     
     /**
-     * Parses Yahoo Finance JSON response to extract current stock price
+     * Fetches price history from the chart endpoint: the closing price of
+     * every bar between two times. Bars without a price (e.g. a trading
+     * halt) are left out. Always goes to the network; neither the price
+     * cache nor the price history is touched.
      * 
-     * @param jsonResponse JSON string from Yahoo Finance API
-     * @return Extracted price
+     * @param symbol Stock symbol (e.g., "TCS.NS")
+     * @param interval Bar size understood by the endpoint, e.g. "1d" or "5m"
+     * @param fromMillis Start of the range, epoch millis, inclusive
+     * @param toMillis End of the range, exclusive
+     * @param consumer Receives the samples (bar start time, close), oldest first
+     * @return Number of samples passed on, or -1 if error occurs
      */
-    private static double parseYahooPrice(String jsonResponse) {
+    public static int fetchHistory(String symbol, String interval, long fromMillis, long toMillis,
+                                   PriceHistory.SampleConsumer consumer) {
+        if (!CIRCUIT_BREAKER.allowRequest(symbol)) {
+            return -1;
+        }
+        
+        double[][] series;
         try {
-            // Look for "regularMarketPrice" in the JSON response
-            String searchKey = "\"regularMarketPrice\":";
-            int priceIndex = jsonResponse.indexOf(searchKey);
-            
-            if (priceIndex != -1) {
-                int startIndex = priceIndex + searchKey.length();
-                int endIndex = jsonResponse.indexOf(",", startIndex);
-                if (endIndex == -1) {
-                    endIndex = jsonResponse.indexOf("}", startIndex);
-                }
-                
-                if (endIndex != -1) {
-                    String priceStr = jsonResponse.substring(startIndex, endIndex).trim();
-                    return Double.parseDouble(priceStr);
+            series = httpGet(historyUrl(symbol, interval, fromMillis, toMillis), StockPriceAPI::parseHistory);
+            recordOutcome(symbol, series != null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        } catch (Exception e) {
+            System.err.println("Error fetching history for " + symbol + ": " + e.getMessage());
+            return -1;
+        }
+        if (series == null) {
+            return -1;
+        }
+        
+        double[] timestamps = series[0];
+        double[] closes = series[1];
+        int count = 0;
+        for (int i = 0; i < Math.min(timestamps.length, closes.length); i++) {
+            long time = (long) timestamps[i] * 1000;
+            // The endpoint rounds the range out to whole bars
+            if (time >= fromMillis && time < toMillis && closes[i] > 0) {
+                consumer.accept(time, closes[i]);
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    // Timestamps and closes; both empty when the range has no bars
+    private static double[][] parseHistory(InputStream body) throws IOException {
+        // Two extractors, since the arrays sit under different parents
+        byte[] bytes = body.readAllBytes();
+        double[] timestamps = CHART_TIMESTAMPS.get().extractNumberArrays(new ByteArrayInputStream(bytes))[0];
+        double[] closes = CHART_CLOSES.get().extractNumberArrays(new ByteArrayInputStream(bytes))[0];
+        if (timestamps == null || closes == null) {
+            return new double[][] {new double[0], new double[0]};
+        }
+        return new double[][] {timestamps, closes};
+    }
+    
+    private static String historyUrl(String symbol, String interval, long fromMillis, long toMillis) {
+        return baseUrl + String.format(HISTORY_PATH, URLEncoder.encode(symbol.trim(), StandardCharsets.UTF_8),
+                interval, Math.floorDiv(fromMillis, 1000), Math.floorDiv(toMillis + 999, 1000));
+    }
+    
+    /**
+     * Fetches current prices for many symbols using as few requests as possible.
+     * Symbols with a fresh cached price are answered without a request; the
+     * rest are de-duplicated and sent in chunks of {@link #MAX_SYMBOLS_PER_REQUEST}.
+     * If the quote endpoint rejects a chunk, its symbols fall back to
+     * individual {@link #fetchCurrentPrice} lookups.
+     * 
+     * @param symbols Stock symbols (e.g., "TCS.NS", "INFY.NS")
+     * @return Map of upper-cased symbol to price; symbols that could not be priced are absent
+     */
+    public static Map<String, Double> fetchCurrentPrices(Collection<String> symbols) {
+        Map<String, Double> prices = new HashMap<>();
+        for (List<String> chunk : splitIntoChunks(symbols)) {
+            prices.putAll(fetchPriceChunk(chunk));
+        }
+        return prices;
+    }
+    
+    /**
+     * Asynchronous variant of {@link #fetchCurrentPrices}.
+     * All chunks are requested at once and multiplexed over the shared client.
+     * 
+     * @param symbols Stock symbols
+     * @return Future completing with the map of upper-cased symbol to price
+     */
+    public static CompletableFuture<Map<String, Double>> fetchCurrentPricesAsync(Collection<String> symbols) {
+        List<CompletableFuture<Map<String, Double>>> futures = new ArrayList<>();
+        for (List<String> chunk : splitIntoChunks(symbols)) {
+            futures.add(fetchPriceChunkAsync(chunk));
+        }
+        
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> {
+                    Map<String, Double> prices = new HashMap<>();
+                    for (CompletableFuture<Map<String, Double>> future : futures) {
+                        prices.putAll(future.join());
+                    }
+                    return prices;
+                });
+    }
+    
+    /**
+     * Normalizes and de-duplicates symbols, then splits them into request-sized chunks
+     * 
+     * @param symbols Stock symbols
+     * @return Chunks of at most {@link #MAX_SYMBOLS_PER_REQUEST} upper-cased symbols
+     */
+    public static List<List<String>> splitIntoChunks(Collection<String> symbols) {
+        Set<String> unique = new LinkedHashSet<>();
+        for (String symbol : symbols) {
+            if (symbol != null && !symbol.trim().isEmpty()) {
+                unique.add(symbol.trim().toUpperCase());
+            }
+        }
+        
+        List<List<String>> chunks = new ArrayList<>();
+        List<String> current = new ArrayList<>(MAX_SYMBOLS_PER_REQUEST);
+        for (String symbol : unique) {
+            current.add(symbol);
+            if (current.size() == MAX_SYMBOLS_PER_REQUEST) {
+                chunks.add(current);
+                current = new ArrayList<>(MAX_SYMBOLS_PER_REQUEST);
+            }
+        }
+        if (!current.isEmpty()) {
+            chunks.add(current);
+        }
+        return chunks;
+    }
+    
+    /**
+     * Prices one chunk of symbols, reading through the price cache
+     * and fetching only the misses in a single request.
+     * Symbols whose circuit breaker is open are left out.
+     * 
+     * @param chunk Upper-cased symbols, at most {@link #MAX_SYMBOLS_PER_REQUEST}
+     * @return Map of symbol to price for the symbols that were found
+     */
+    static Map<String, Double> fetchPriceChunk(List<String> chunk) {
+        Map<String, Double> prices = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String symbol : chunk) {
+            Double cached = PRICE_CACHE.get(symbol);
+            if (cached != null) {
+                prices.put(symbol, cached);
+            } else if (CIRCUIT_BREAKER.allowRequest(symbol)) {
+                missing.add(symbol);
+            }
+        }
+        
+        if (!missing.isEmpty()) {
+            Map<String, Double> fetched = requestPriceChunk(missing);
+            for (Map.Entry<String, Double> entry : fetched.entrySet()) {
+                rememberPrice(entry.getKey(), entry.getValue());
+            }
+            prices.putAll(fetched);
+        }
+        return prices;
+    }
+    
+    /**
+     * Asynchronous variant of {@link #fetchPriceChunk}
+     */
+    private static CompletableFuture<Map<String, Double>> fetchPriceChunkAsync(List<String> chunk) {
+        Map<String, Double> prices = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String symbol : chunk) {
+            Double cached = PRICE_CACHE.get(symbol);
+            if (cached != null) {
+                prices.put(symbol, cached);
+            } else if (CIRCUIT_BREAKER.allowRequest(symbol)) {
+                missing.add(symbol);
+            }
+        }
+        
+        if (missing.isEmpty()) {
+            return CompletableFuture.completedFuture(prices);
+        }
+        
+        String joined = URLEncoder.encode(String.join(",", missing), StandardCharsets.UTF_8);
+        return httpGetAsync(batchQuoteUrl(joined), StockPriceAPI::parseBatchPrices)
+                .handle((fetched, e) -> {
+                    if (e != null) {
+                        // Throttled or unreachable - per-symbol requests would only make it worse
+                        System.err.println("Error fetching batch quote: " + e.getMessage());
+                        return CompletableFuture.completedFuture(prices);
+                    }
+                    if (fetched != null) {
+                        fetched.keySet().retainAll(missing);
+                        for (String symbol : missing) {
+                            recordOutcome(symbol, fetched.containsKey(symbol));
+                        }
+                        for (Map.Entry<String, Double> entry : fetched.entrySet()) {
+                            rememberPrice(entry.getKey(), entry.getValue());
+                        }
+                        prices.putAll(fetched);
+                        return CompletableFuture.completedFuture(prices);
+                    }
+                    
+                    // Batch endpoint rejected the request - price each symbol on its own
+                    List<CompletableFuture<Double>> singles = new ArrayList<>();
+                    for (String symbol : missing) {
+                        singles.add(requestPriceAsync(symbol));
+                    }
+                    return CompletableFuture.allOf(singles.toArray(new CompletableFuture<?>[0]))
+                            .thenApply(ignored -> {
+                                for (int i = 0; i < missing.size(); i++) {
+                                    double price = singles.get(i).join();
+                                    if (price > 0) {
+                                        rememberPrice(missing.get(i), price);
+                                        prices.put(missing.get(i), price);
+                                    }
+                                }
+                                return prices;
+                            });
+                })
+                .thenCompose(future -> future);
+    }
+    
+    private static Map<String, Double> requestPriceChunk(List<String> chunk) {
+        try {
+            String joined = URLEncoder.encode(String.join(",", chunk), StandardCharsets.UTF_8);
+            Map<String, Double> prices = httpGet(batchQuoteUrl(joined), StockPriceAPI::parseBatchPrices);
+            if (prices != null) {
+                prices.keySet().retainAll(chunk);
+                for (String symbol : chunk) {
+                    recordOutcome(symbol, prices.containsKey(symbol));
                 }
+                return prices;
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new HashMap<>();
         } catch (Exception e) {
-            System.err.println("Error parsing price: " + e.getMessage());
+            // Throttled or unreachable - per-symbol requests would only make it worse
+            System.err.println("Error fetching batch quote: " + e.getMessage());
+            return new HashMap<>();
+        }
+        
+        // Batch endpoint rejected the request - price each symbol on its own
+        Map<String, Double> prices = new HashMap<>();
+        for (String symbol : chunk) {
+            if (Thread.currentThread().isInterrupted()) {
+                break; // The caller gave up on this refresh
+            }
+            double price = requestPrice(symbol);
+            if (price > 0) {
+                prices.put(symbol, price);
+            }
+        }
+        return prices;
+    }
+    
+    /**
+     * Parses a multi-symbol quote response.
+     * Each entry of the "result" array is read on its own so a price is
+     * always paired with the symbol of the same entry.
+     * 
+     * @param body JSON stream from the quote endpoint
+     * @return Map of upper-cased symbol to price
+     */
+    static Map<String, Double> parseBatchPrices(InputStream body) throws IOException {
+        Map<String, Double> prices = new HashMap<>();
+        for (String[] entry : BATCH_RESULT.get().extractAll(body)) {
+            double price = parseNumber(entry[1]);
+            if (entry[0] != null && price > 0) {
+                prices.put(entry[0].toUpperCase(), price);
+            }
+        }
+        return prices;
+    }
+    
+    /**
+     * Parses a chart response, reading only as far as the "meta" block
+     * 
+     * @param symbol Stock symbol the request was made for
+     * @param body JSON stream from the chart endpoint
+     * @return Quote, or null if the response carries no price
+     */
+    static Quote parseQuote(String symbol, InputStream body) throws IOException {
+        String[] meta = CHART_META.get().extractFirst(body);
+        double price = parseNumber(meta[0]);
+        if (price <= 0) {
+            return null;
         }
         
-        return -1;
+        double previousClose = parseNumber(meta[1]);
+        if (previousClose <= 0) {
+            previousClose = parseNumber(meta[2]);
+        }
+        long timestamp = meta[4] != null ? (long) parseNumber(meta[4]) : 0;
+        return new Quote(symbol, price, previousClose, meta[3], timestamp);
+    }
+    
+    private static double parseNumber(String value) {
+        if (value == null) return -1;
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            System.err.println("Error parsing price: " + e.getMessage());
+            return -1;
+        }
     }
     
     /**
-     * Fetches the stock name (company name) from Yahoo Finance
+     * Fetches the stock name (company name) from Yahoo Finance.
+     * Served from the name cache when the symbol was looked up recently,
+     * then from the on-disk {@link SymbolMetadataStore}; only unknown
+     * symbols go to the network.
      * 
      * @param symbol Stock symbol (e.g., "AAPL")
      * @return Company name, or null if error occurs
      */
     public static String fetchStockName(String symbol) {
+        String cached = NAME_CACHE.get(symbol);
+        if (cached != null) {
+            return cached;
+        }
+        
+        String stored = SymbolMetadataStore.getDefault().getName(symbol);
+        if (stored != null) {
+            NAME_CACHE.put(symbol, stored);
+            return stored;
+        }
+        
+        String name = requestStockName(symbol);
+        rememberName(symbol, name);
+        return name;
+    }
+    
+    // Fetched prices also go into the price history
+    private static void rememberPrice(String symbol, double price) {
+        PRICE_CACHE.put(symbol, price);
+        PriceHistory.getDefault().record(symbol, price);
+    }
+    
+    // Kept out of parseQuote so parsing never touches the metadata file
+    private static void rememberCurrency(Quote quote) {
+        if (quote != null) {
+            SymbolMetadataStore.getDefault().recordCurrency(quote.getSymbol(), quote.getCurrency());
+        }
+    }
+    
+    // Only keep real names, not the symbol fallback
+    private static void rememberName(String symbol, String name) {
+        if (name != null && !name.equalsIgnoreCase(symbol)) {
+            NAME_CACHE.put(symbol, name);
+            SymbolMetadataStore.getDefault().recordName(symbol, name);
+        }
+    }
+    
+    private static String requestStockName(String symbol) {
         try {
-            String urlString = String.format(SEARCH_URL, URLEncoder.encode(symbol, StandardCharsets.UTF_8.toString()));
-            URL url = new URL(urlString);
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("GET");
-            conn.setRequestProperty("User-Agent", "Mozilla/5.0");
-            conn.setConnectTimeout(10000);
-            conn.setReadTimeout(10000);
-            
-            int responseCode = conn.getResponseCode();
-            if (responseCode == 200) {
-                BufferedReader in = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-                String inputLine;
-                StringBuilder response = new StringBuilder();
-                
-                while ((inputLine = in.readLine()) != null) {
-                    response.append(inputLine);
-                }
-                in.close();
-                
-                String jsonResponse = response.toString();
-                return parseStockName(jsonResponse, symbol);
-            }
+            return httpGet(searchUrl(symbol), body -> parseStockName(body, symbol));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
             System.err.println("Error fetching name for " + symbol + ": " + e.getMessage());
         }
@@ -123,54 +559,287 @@ public class StockPriceAPI {
     }
     
     /**
-     * Parses the company name from Yahoo Finance search response
+     * Asynchronous variant of {@link #fetchStockName}
+     * 
+     * @param symbol Stock symbol
+     * @return Future completing with the company name, or null if an error occurs
+     */
+    public static CompletableFuture<String> fetchStockNameAsync(String symbol) {
+        String cached = NAME_CACHE.get(symbol);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        
+        String stored = SymbolMetadataStore.getDefault().getName(symbol);
+        if (stored != null) {
+            NAME_CACHE.put(symbol, stored);
+            return CompletableFuture.completedFuture(stored);
+        }
+        
+        return httpGetAsync(searchUrl(symbol), body -> parseStockName(body, symbol))
+                .thenApply(name -> {
+                    rememberName(symbol, name);
+                    return name;
+                })
+                .exceptionally(e -> {
+                    System.err.println("Error fetching name for " + symbol + ": " + e.getMessage());
+                    return null;
+                });
+    }
+    
+    private static String batchQuoteUrl(String joinedSymbols) {
+        return baseUrl + String.format(BATCH_QUOTE_PATH, joinedSymbols);
+    }
+    
+    private static String searchUrl(String symbol) {
+        return baseUrl + String.format(SEARCH_PATH, URLEncoder.encode(symbol.trim(), StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Parses the company name from Yahoo Finance search response,
+     * reading only as far as the first entry of "quotes"
      * 
-     * @param jsonResponse JSON response
+     * @param body JSON stream
      * @param symbol Stock symbol
      * @return Company name
      */
-    private static String parseStockName(String jsonResponse, String symbol) {
-        try {
-            // Look for "longname" or "shortname" in the response
-            String[] searchKeys = {"\"longname\":\"", "\"shortname\":\""};
+    static String parseStockName(InputStream body, String symbol) throws IOException {
+        // Prefer "longname", then "shortname"
+        String[] names = SEARCH_QUOTE.get().extractFirst(body);
+        for (String name : names) {
+            if (name != null && !name.isEmpty()) {
+                return name;
+            }
+        }
+        
+        return symbol; // Fallback to symbol
+    }
+    
+    /**
+     * Points every lookup at a different quote provider.
+     * The server must expose the Yahoo chart, quote and search endpoints;
+     * defaults to {@link #DEFAULT_BASE_URL} or the "stockapi.baseUrl" system property.
+     * 
+     * @param url Base URL without trailing slash (e.g. "http://localhost:8089")
+     */
+    public static void setBaseUrl(String url) {
+        String trimmed = url.trim();
+        while (trimmed.endsWith("/")) {
+            trimmed = trimmed.substring(0, trimmed.length() - 1);
+        }
+        baseUrl = trimmed;
+        // Cached quotes came from the previous provider
+        PRICE_CACHE.clear();
+        NAME_CACHE.clear();
+    }
+    
+    public static String getBaseUrl() {
+        return baseUrl;
+    }
+    
+    /**
+     * @return Cache consulted by {@link #fetchCurrentPrice} and {@link #fetchCurrentPrices}
+     */
+    public static QuoteCache<Double> getPriceCache() {
+        return PRICE_CACHE;
+    }
+    
+    /**
+     * @return Cache consulted by {@link #fetchStockName}
+     */
+    public static QuoteCache<String> getNameCache() {
+        return NAME_CACHE;
+    }
+    
+    /**
+     * @return Limiter every request passes through (current rate, tokens, throttle events)
+     */
+    public static RateLimiter getRateLimiter() {
+        return RATE_LIMITER;
+    }
+    
+    /**
+     * @return Per-symbol breaker states
+     */
+    public static CircuitBreaker getCircuitBreaker() {
+        return CIRCUIT_BREAKER;
+    }
+    
+    /**
+     * @return Number of requests repeated after a 429 or 5xx response
+     */
+    public static long getRetryCount() {
+        return RETRIES.get();
+    }
+    
+    // Only symbol-specific answers count; throttling and outages throw instead
+    private static void recordOutcome(String symbol, boolean success) {
+        if (success) {
+            CIRCUIT_BREAKER.recordSuccess(symbol);
+        } else {
+            CIRCUIT_BREAKER.recordFailure(symbol);
+        }
+    }
+    
+    /**
+     * Performs a GET request on the shared client and hands the decoded
+     * response body to a reader as a stream.
+     * Every attempt waits for the rate limiter; 429 and 5xx responses are
+     * retried with jittered exponential backoff.
+     * 
+     * @param urlString Fully formatted request URL
+     * @param reader Parses the body
+     * @return Parsed result, or null if the server did not answer 200
+     * @throws IOException if the server still throttles or fails after {@link #MAX_ATTEMPTS} attempts
+     */
+    private static <T> T httpGet(String urlString, BodyReader<T> reader) throws IOException, InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            RATE_LIMITER.acquire();
+            HttpResponse<InputStream> response = HTTP_CLIENT.send(newRequest(urlString), HttpResponse.BodyHandlers.ofInputStream());
+            if (!isRetryable(response.statusCode())) {
+                return readBody(response, reader);
+            }
             
-            for (String searchKey : searchKeys) {
-                int nameIndex = jsonResponse.indexOf(searchKey);
-                if (nameIndex != -1) {
-                    int startIndex = nameIndex + searchKey.length();
-                    int endIndex = jsonResponse.indexOf("\"", startIndex);
-                    
-                    if (endIndex != -1) {
-                        return jsonResponse.substring(startIndex, endIndex);
+            long delay = retryDelayMillis(response, attempt);
+            response.body().close();
+            if (attempt == MAX_ATTEMPTS) {
+                throw new IOException("HTTP " + response.statusCode() + " after " + MAX_ATTEMPTS + " attempts");
+            }
+            RETRIES.incrementAndGet();
+            Thread.sleep(delay);
+        }
+    }
+    
+    /**
+     * Asynchronous variant of {@link #httpGet}.
+     * Rate limiting and backoff delays are scheduled, never slept.
+     */
+    private static <T> CompletableFuture<T> httpGetAsync(String urlString, BodyReader<T> reader) {
+        return sendAsync(urlString, 1)
+                .thenApply(response -> {
+                    try {
+                        return readBody(response, reader);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
                     }
-                }
+                });
+    }
+    
+    private static CompletableFuture<HttpResponse<InputStream>> sendAsync(String urlString, int attempt) {
+        long waitNanos = RATE_LIMITER.reserve();
+        CompletableFuture<HttpResponse<InputStream>> sent = waitNanos > 0
+                ? CompletableFuture.runAsync(() -> { }, delayed(waitNanos, TimeUnit.NANOSECONDS))
+                        .thenCompose(ignored -> HTTP_CLIENT.sendAsync(newRequest(urlString), HttpResponse.BodyHandlers.ofInputStream()))
+                : HTTP_CLIENT.sendAsync(newRequest(urlString), HttpResponse.BodyHandlers.ofInputStream());
+        
+        return sent.thenCompose(response -> {
+            if (!isRetryable(response.statusCode())) {
+                return CompletableFuture.completedFuture(response);
             }
-        } catch (Exception e) {
-            System.err.println("Error parsing name: " + e.getMessage());
+            
+            long delay = retryDelayMillis(response, attempt);
+            closeQuietly(response.body());
+            if (attempt == MAX_ATTEMPTS) {
+                return CompletableFuture.failedFuture(
+                        new IOException("HTTP " + response.statusCode() + " after " + MAX_ATTEMPTS + " attempts"));
+            }
+            RETRIES.incrementAndGet();
+            return CompletableFuture.runAsync(() -> { }, delayed(delay, TimeUnit.MILLISECONDS))
+                    .thenCompose(ignored -> sendAsync(urlString, attempt + 1));
+        });
+    }
+    
+    private static Executor delayed(long delay, TimeUnit unit) {
+        return CompletableFuture.delayedExecutor(delay, unit);
+    }
+    
+    private static boolean isRetryable(int statusCode) {
+        return statusCode == 429 || statusCode >= 500;
+    }
+    
+    /**
+     * Slows the shared limiter down on 429 and works out how long to wait
+     * before the next attempt: exponential backoff with random jitter so
+     * concurrent callers do not retry in lock-step, stretched to honor a
+     * Retry-After header (capped at {@link #BACKOFF_MAX_MILLIS})
+     */
+    private static long retryDelayMillis(HttpResponse<?> response, int attempt) {
+        if (response.statusCode() == 429) {
+            RATE_LIMITER.onThrottled();
         }
         
-        return symbol; // Fallback to symbol
+        long backoff = Math.min(BACKOFF_MAX_MILLIS, BACKOFF_BASE_MILLIS << (attempt - 1));
+        long delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+        
+        String retryAfter = response.headers().firstValue("Retry-After").orElse(null);
+        if (retryAfter != null) {
+            try {
+                delay = Math.max(delay, Math.min(BACKOFF_MAX_MILLIS, Long.parseLong(retryAfter.trim()) * 1000));
+            } catch (NumberFormatException e) {
+                // HTTP-date form; the jittered backoff is good enough
+            }
+        }
+        return delay;
+    }
+    
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException e) {
+            // Nothing left to read anyway
+        }
+    }
+    
+    private static HttpRequest newRequest(String urlString) {
+        return HttpRequest.newBuilder(URI.create(urlString))
+                .timeout(TIMEOUT)
+                .header("User-Agent", "Mozilla/5.0")
+                .header("Accept-Encoding", "gzip")
+                .GET()
+                .build();
     }
     
     /**
-     * Updates all stocks in a portfolio with current prices
+     * Parses a response body, decoding gzip when the server compressed it.
+     * The stream is always closed, even when the reader stops early.
+     */
+    private static <T> T readBody(HttpResponse<InputStream> response, BodyReader<T> reader) throws IOException {
+        if (response.statusCode() != 200) {
+            response.body().close();
+            return null;
+        }
+        RATE_LIMITER.onSuccess();
+        try (InputStream in = decodedBody(response)) {
+            return reader.read(in);
+        }
+    }
+    
+    private static InputStream decodedBody(HttpResponse<InputStream> response) throws IOException {
+        String encoding = response.headers().firstValue("Content-Encoding").orElse("");
+        if ("gzip".equalsIgnoreCase(encoding)) {
+            return new GZIPInputStream(response.body());
+        }
+        return response.body();
+    }
+    
+    /**
+     * Updates all stocks in a portfolio with current prices.
+     * Symbols are fetched concurrently by a {@link PriceRefresher}.
      * 
      * @param portfolio Portfolio to update
      */
     public static void updateAllPrices(Portfolio portfolio) {
         System.out.println("Fetching current prices...");
-        int updated = 0;
         
-        for (Stock stock : portfolio.getStocks()) {
-            double currentPrice = fetchCurrentPrice(stock.getSymbol());
-            if (currentPrice > 0) {
-                stock.setCurrentPrice(currentPrice);
-                updated++;
-                System.out.println("Updated " + stock.getSymbol() + " to $" + currentPrice);
+        PriceRefresher.Result result = new PriceRefresher().refresh(portfolio, (symbol, price, completed, total) -> {
+            if (price > 0) {
+                System.out.println("Updated " + symbol + " to ₹" + price);
             }
-        }
+        });
         
-        System.out.println("Updated " + updated + " out of " + portfolio.getStockCount() + " stocks.");
+        System.out.println(result);
+        System.out.println("Rate limiter: " + RATE_LIMITER);
+        System.out.println("Circuit breaker: " + CIRCUIT_BREAKER);
     }
     
 }
@@ -0,0 +1,304 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * On-disk store of symbol metadata (company name, exchange suffix, currency).
+ * Company names almost never change, so once a symbol has been looked up it
+ * can be added again without any network I/O.
+ *
+ * The file is a tab-separated text file loaded lazily on first use. Updates
+ * are written back on a background thread; bursts of updates are coalesced
+ * into a single write.
+ */
+public class SymbolMetadataStore {
+
+    public static final String DEFAULT_FILE = "symbol_metadata.tsv";
+
+    // Re-verify names against the network after this long
+    public static final long DEFAULT_MAX_AGE_MILLIS = 180L * 24 * 60 * 60 * 1000;
+
+    private static final String HEADER = "# Symbol\tName\tExchange\tCurrency\tLast Verified";
+
+    /**
+     * Metadata known about one symbol
+     */
+    public static class Entry {
+        private final String symbol;
+        private final String name;
+        private final String exchange;
+        private final String currency;
+        private final long lastVerified;
+
+        Entry(String symbol, String name, String exchange, String currency, long lastVerified) {
+            this.symbol = symbol;
+            this.name = name;
+            this.exchange = exchange;
+            this.currency = currency;
+            this.lastVerified = lastVerified;
+        }
+
+        public String getSymbol() {
+            return symbol;
+        }
+
+        // Company name, or null if only the currency is known so far
+        public String getName() {
+            return name;
+        }
+
+        // Exchange suffix such as ".NS" or ".BO", or empty for other listings
+        public String getExchange() {
+            return exchange;
+        }
+
+        public String getCurrency() {
+            return currency;
+        }
+
+        // Epoch millis when the name was last confirmed by the network
+        public long getLastVerified() {
+            return lastVerified;
+        }
+    }
+
+    private static class Holder {
+        static final SymbolMetadataStore DEFAULT = new SymbolMetadataStore(Paths.get(DEFAULT_FILE), DEFAULT_MAX_AGE_MILLIS);
+    }
+
+    private final Path file;
+    private final long maxAgeMillis;
+    private Map<String, Entry> entries; // Loaded on first access
+    private boolean dirty;
+    private boolean writeScheduled;
+    private final ExecutorService writer;
+    private final Object writeLock = new Object();
+
+    /**
+     * @param file Backing file (need not exist yet)
+     * @param maxAgeMillis How long a stored name is trusted before it is looked up again
+     */
+    public SymbolMetadataStore(Path file, long maxAgeMillis) {
+        this.file = file;
+        this.maxAgeMillis = maxAgeMillis;
+        this.writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "symbol-metadata-writer");
+            t.setDaemon(true);
+            return t;
+        });
+        // Make sure pending updates reach the disk when the app exits
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "symbol-metadata-flush"));
+    }
+
+    /**
+     * @return Store backed by {@link #DEFAULT_FILE} in the working directory
+     */
+    public static SymbolMetadataStore getDefault() {
+        return Holder.DEFAULT;
+    }
+
+    /**
+     * @param symbol Stock symbol
+     * @return Stored metadata, or null if the symbol is unknown
+     */
+    public synchronized Entry lookup(String symbol) {
+        return loaded().get(normalize(symbol));
+    }
+
+    /**
+     * Returns the stored company name if it was verified recently enough
+     *
+     * @param symbol Stock symbol
+     * @return Company name, or null if unknown or due for re-verification
+     */
+    public synchronized String getName(String symbol) {
+        Entry entry = lookup(symbol);
+        if (entry == null || entry.name == null) return null;
+        if (System.currentTimeMillis() - entry.lastVerified > maxAgeMillis) return null;
+        return entry.name;
+    }
+
+    /**
+     * Records a company name confirmed by the network
+     *
+     * @param symbol Stock symbol
+     * @param name Company name
+     */
+    public synchronized void recordName(String symbol, String name) {
+        if (name == null || name.isEmpty()) return;
+        String key = normalize(symbol);
+        Entry old = loaded().get(key);
+        String currency = old != null ? old.currency : null;
+        entries.put(key, new Entry(key, clean(name), exchangeOf(key), currency, System.currentTimeMillis()));
+        markDirty();
+    }
+
+    /**
+     * Records the trading currency reported with a quote.
+     * Only writes to disk when the currency actually changed.
+     *
+     * @param symbol Stock symbol
+     * @param currency ISO currency code (e.g. "INR")
+     */
+    public synchronized void recordCurrency(String symbol, String currency) {
+        if (currency == null || currency.isEmpty()) return;
+        String key = normalize(symbol);
+        Entry old = loaded().get(key);
+        if (old != null && currency.equals(old.currency)) return;
+
+        if (old != null) {
+            entries.put(key, new Entry(key, old.name, old.exchange, clean(currency), old.lastVerified));
+        } else {
+            entries.put(key, new Entry(key, null, exchangeOf(key), clean(currency), 0));
+        }
+        markDirty();
+    }
+
+    public synchronized int size() {
+        return loaded().size();
+    }
+
+    /**
+     * Writes pending updates synchronously
+     */
+    public void flush() {
+        try {
+            writePending();
+        } catch (IOException e) {
+            System.err.println("Error saving symbol metadata: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Flushes pending updates and stops the background writer
+     */
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private void markDirty() {
+        dirty = true;
+        if (!writeScheduled && !writer.isShutdown()) {
+            writeScheduled = true;
+            writer.execute(() -> {
+                synchronized (this) {
+                    writeScheduled = false;
+                }
+                flush();
+            });
+        }
+    }
+
+    private void writePending() throws IOException {
+        synchronized (writeLock) {
+            List<Entry> snapshot;
+            synchronized (this) {
+                if (!dirty) return;
+                snapshot = new ArrayList<>(entries.values());
+                dirty = false;
+            }
+
+            // Write to a temp file and swap it in so a crash never leaves a torn file
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try {
+                try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                    out.write(HEADER);
+                    out.newLine();
+                    for (Entry entry : snapshot) {
+                        out.write(entry.symbol + "\t" + nullToEmpty(entry.name) + "\t" + entry.exchange + "\t"
+                                + nullToEmpty(entry.currency) + "\t" + entry.lastVerified);
+                        out.newLine();
+                    }
+                }
+                try {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException e) {
+                synchronized (this) {
+                    dirty = true; // Try again with the next update
+                }
+                throw e;
+            }
+        }
+    }
+
+    private Map<String, Entry> loaded() {
+        if (entries == null) {
+            entries = new HashMap<>();
+            if (Files.exists(file)) {
+                try {
+                    load();
+                } catch (IOException e) {
+                    System.err.println("Error loading symbol metadata: " + e.getMessage());
+                }
+            }
+        }
+        return entries;
+    }
+
+    private void load() throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) continue;
+
+                String[] parts = line.split("\t", -1);
+                if (parts.length < 5) {
+                    System.err.println("Skipping invalid metadata line: " + line);
+                    continue;
+                }
+                try {
+                    String symbol = normalize(parts[0]);
+                    entries.put(symbol, new Entry(symbol, emptyToNull(parts[1]), parts[2],
+                            emptyToNull(parts[3]), Long.parseLong(parts[4].trim())));
+                } catch (NumberFormatException e) {
+                    System.err.println("Skipping invalid metadata line: " + line);
+                }
+            }
+        }
+    }
+
+    private static String exchangeOf(String symbol) {
+        if (symbol.endsWith(".NS")) return ".NS";
+        if (symbol.endsWith(".BO")) return ".BO";
+        return "";
+    }
+
+    // Tabs and newlines would break the line format
+    private static String clean(String value) {
+        return value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ').trim();
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    private static String normalize(String symbol) {
+        return symbol.trim().toUpperCase();
+    }
+}
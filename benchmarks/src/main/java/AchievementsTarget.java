@@ -0,0 +1,39 @@
+import java.util.List;
+
+/**
+ * GamifiedPortfolio side of {@link benchmarks.AchievementsBenchmark}
+ */
+public class AchievementsTarget implements benchmarks.AchievementsBenchmark.Target {
+
+    private GamifiedPortfolio portfolio;
+    private List<Stock> stocks;
+
+    @Override
+    public void setUp(int holdings) {
+        stocks = BenchmarkData.stocks(holdings);
+        portfolio = new GamifiedPortfolio("Benchmark");
+        portfolio.addStocks(stocks);
+    }
+
+    @Override
+    public int checkAchievements() {
+        portfolio.checkAchievements();
+        return portfolio.getAchievementCount();
+    }
+
+    @Override
+    public int addStockOneByOne() {
+        GamifiedPortfolio fresh = new GamifiedPortfolio("Benchmark");
+        for (Stock stock : stocks) {
+            fresh.addStock(stock);
+        }
+        return fresh.getLevel();
+    }
+
+    @Override
+    public int addStocksBatch() {
+        GamifiedPortfolio fresh = new GamifiedPortfolio("Benchmark");
+        fresh.addStocks(stocks);
+        return fresh.getLevel();
+    }
+}
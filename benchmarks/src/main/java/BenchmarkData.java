@@ -0,0 +1,71 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Deterministic portfolios and CSV exports for the benchmarks
+ */
+final class BenchmarkData {
+
+    // The importers read with the default charset, which cannot always encode the rupee sign
+    private static final String RUPEE = Charset.defaultCharset().newEncoder().canEncode('₹') ? "₹" : "";
+
+    private static final String[] SECTORS = {"Industries", "Bank", "Motors", "Pharma", "Power", "Steel", "Finance"};
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * @return Stocks with distinct symbols, shuffled names and a mix of gains and losses
+     */
+    static List<Stock> stocks(int count) {
+        Random random = new Random(42);
+        List<Stock> stocks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String symbol = "SYM" + Integer.toString(random.nextInt(1 << 30), 36).toUpperCase() + i + ".NS";
+            String name = "Company " + (char) ('A' + random.nextInt(26)) + i + " " + SECTORS[random.nextInt(SECTORS.length)];
+            double buyPrice = 10 + random.nextInt(500000) / 100.0;
+            double currentPrice = Math.max(1, buyPrice * (0.6 + random.nextDouble() * 0.8));
+            stocks.add(new Stock(name, symbol, 1 + random.nextInt(500), buyPrice, Math.round(currentPrice * 100) / 100.0));
+        }
+        return stocks;
+    }
+
+    static GamifiedPortfolio portfolio(int holdings) {
+        GamifiedPortfolio portfolio = new GamifiedPortfolio("Benchmark");
+        portfolio.addStocks(stocks(holdings));
+        return portfolio;
+    }
+
+    // Symbol,Name,Quantity,Buy Price,Current Price
+    static void writeGeneric(Path file, int rows) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            out.write("Symbol,Name,Quantity,Buy Price,Current Price\n");
+            for (Stock stock : stocks(rows)) {
+                out.write(stock.getSymbol() + "," + stock.getName() + "," + stock.getQuantity() + ","
+                        + stock.getBuyPrice() + "," + stock.getCurrentPrice() + "\n");
+            }
+        }
+    }
+
+    // Groww layout with quoted names and rupee amounts: "Company A1 Bank, Ltd.",10,"₹1,234.50","₹1,301.25"
+    static void writeGroww(Path file, int rows) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            out.write("Stock Name,Quantity,Avg Buy Price,Current Price\n");
+            for (Stock stock : stocks(rows)) {
+                out.write("\"" + stock.getName() + ", Ltd.\"," + stock.getQuantity() + ","
+                        + rupees(stock.getBuyPrice()) + "," + rupees(stock.getCurrentPrice()) + "\n");
+            }
+        }
+    }
+
+    static String rupees(double amount) {
+        return String.format(Locale.ROOT, "\"%s%,.2f\"", RUPEE, amount);
+    }
+}
@@ -0,0 +1,113 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Importer side of {@link benchmarks.ImporterBenchmark}
+ */
+public class ImporterTarget implements benchmarks.ImporterBenchmark.Target {
+
+    private static final PortfolioImporter.RowMapper GENERIC = PortfolioImporter.generic(0, 1, 2, 3, 4);
+    private static final String LINE = "RELIANCE.NS,Reliance Industries,10,₹2450.50,₹2680.75";
+    // Small enough that the 100000-row export (about 6 MB) is split; files under two chunks go sequential
+    private static final int CHUNK_BYTES = 256 << 10;
+
+    private Path directory;
+    private Path generic;
+    private Path groww;
+    private long genericBytes;
+    private long growwBytes;
+    private final ParallelImporter parallel = new ParallelImporter(ForkJoinPool.commonPool(), CHUNK_BYTES);
+    private final CsvTokenizer tokenizer = new CsvTokenizer();
+    private final char[] line = LINE.toCharArray();
+    private long sink;
+
+    @Override
+    public void setUp(int rows) throws IOException {
+        directory = Files.createTempDirectory("import-bench");
+        generic = directory.resolve("generic.csv");
+        groww = directory.resolve("groww.csv");
+        BenchmarkData.writeGeneric(generic, rows);
+        BenchmarkData.writeGroww(groww, rows);
+        genericBytes = Files.size(generic);
+        growwBytes = Files.size(groww);
+    }
+
+    @Override
+    public long genericBytes() {
+        return genericBytes;
+    }
+
+    @Override
+    public long growwBytes() {
+        return growwBytes;
+    }
+
+    // The importers before CsvTokenizer: readLine, split and a trim/replace chain per field
+    @Override
+    public long splitBaseline() throws IOException {
+        long imported = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(generic.toFile()))) {
+            String line = reader.readLine(); // Header
+            while ((line = reader.readLine()) != null) {
+                Stock stock = splitMap(line);
+                if (stock != null) {
+                    imported++;
+                    sink += stock.getQuantity();
+                }
+            }
+        }
+        return imported;
+    }
+
+    private static Stock splitMap(String line) {
+        try {
+            String[] parts = line.split(",");
+            String symbol = parts[0].trim();
+            String name = parts[1].trim();
+            int quantity = Integer.parseInt(parts[2].trim());
+            double buyPrice = Double.parseDouble(parts[3].trim().replace("₹", "").replace(",", ""));
+            double currentPrice = Double.parseDouble(parts[4].trim().replace("₹", "").replace(",", ""));
+            String yahoo = !symbol.contains(".NS") && !symbol.contains(".BO") ? symbol + ".NS" : symbol;
+            return new Stock(name, yahoo, quantity, buyPrice, currentPrice);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public long importGeneric() throws IOException {
+        return PortfolioImporter.importTo(generic, GENERIC, stock -> sink += stock.getQuantity()).getImported();
+    }
+
+    @Override
+    public long importGenericParallel() throws IOException {
+        return parallel.importTo(generic, GENERIC, stock -> sink += stock.getQuantity()).getImported();
+    }
+
+    @Override
+    public long importGroww() throws IOException {
+        return PortfolioImporter.importTo(groww, PortfolioImporter.GROWW, stock -> sink += stock.getQuantity()).getImported();
+    }
+
+    @Override
+    public Object tokenizeLine() {
+        tokenizer.next(line, 0, line.length, true);
+        return GENERIC.map(tokenizer);
+    }
+
+    @Override
+    public Object splitLine() {
+        return splitMap(LINE);
+    }
+
+    @Override
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(generic);
+        Files.deleteIfExists(groww);
+        Files.deleteIfExists(directory);
+    }
+}
@@ -0,0 +1,84 @@
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Save file side of {@link benchmarks.PersistenceBenchmark}
+ */
+public class PersistenceTarget implements benchmarks.PersistenceBenchmark.Target {
+
+    private Path directory;
+    private String file;
+    private String serializedFile;
+    private GamifiedPortfolio portfolio;
+
+    @Override
+    public void setUp(int holdings) throws IOException {
+        directory = Files.createTempDirectory("portfolio-bench");
+        file = directory.resolve("portfolio.dat").toString();
+        portfolio = BenchmarkData.portfolio(holdings);
+        portfolio.saveToFile(file);
+        serializedFile = directory.resolve("portfolio.ser").toString();
+        serializationSave();
+    }
+
+    @Override
+    public long fileBytes() throws IOException {
+        return Files.size(Path.of(file));
+    }
+
+    @Override
+    public long serializedBytes() throws IOException {
+        return Files.size(Path.of(serializedFile));
+    }
+
+    @Override
+    public void save() throws IOException {
+        portfolio.saveToFile(file);
+    }
+
+    @Override
+    public Object load() throws IOException {
+        return Portfolio.loadFromFile(file);
+    }
+
+    @Override
+    public Object encode() {
+        return PortfolioFile.encode(portfolio);
+    }
+
+    // The save and load before PortfolioFile, plus the fsync saveToFile does now
+    @Override
+    public void serializationSave() throws IOException {
+        try (FileOutputStream out = new FileOutputStream(serializedFile);
+             ObjectOutputStream oos = new ObjectOutputStream(out)) {
+            oos.writeObject(portfolio);
+            oos.flush();
+            out.getFD().sync();
+        }
+    }
+
+    @Override
+    public Object serializationLoad() throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(serializedFile))) {
+            return ois.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
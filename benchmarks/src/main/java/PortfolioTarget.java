@@ -0,0 +1,56 @@
+import java.util.List;
+
+/**
+ * Portfolio side of {@link benchmarks.PortfolioBenchmark}
+ */
+public class PortfolioTarget implements benchmarks.PortfolioBenchmark.Target {
+
+    private Portfolio portfolio;
+    private String[] symbols;
+    private int next;
+
+    @Override
+    public void setUp(int holdings) {
+        portfolio = BenchmarkData.portfolio(holdings);
+        symbols = portfolio.getSymbols().toArray(new String[0]);
+    }
+
+    @Override
+    public double totals() {
+        return portfolio.getTotalValue() + portfolio.getTotalProfit() + portfolio.getTotalProfitPercentage();
+    }
+
+    @Override
+    public boolean recomputeTotals() {
+        return portfolio.checkTotals();
+    }
+
+    @Override
+    public double scanStocks() {
+        double value = 0;
+        List<Stock> stocks = portfolio.getStocks();
+        for (Stock stock : stocks) {
+            value += stock.getCurrentPrice() * stock.getQuantity();
+        }
+        return value;
+    }
+
+    @Override
+    public Object findStock() {
+        String symbol = symbols[next];
+        next = next + 1 == symbols.length ? 0 : next + 1;
+        return portfolio.findStock(symbol);
+    }
+
+    @Override
+    public void sortByNameThenValue() {
+        portfolio.sortByName();
+        portfolio.sortByValue();
+    }
+
+    @Override
+    public void sortByNameThenProfit() {
+        portfolio.sortByName();
+        portfolio.sortByProfit();
+    }
+}
@@ -0,0 +1,188 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * StockPriceAPI side of {@link benchmarks.QuoteParsingBenchmark}, reading
+ * the payloads LocalQuoteServer serves
+ */
+public class QuoteParsingTarget implements benchmarks.QuoteParsingBenchmark.Target {
+
+    private static final String[] SYMBOLS = {"RELIANCE.NS", "TCS.NS", "INFY.NS", "HDFCBANK.NS", "ITC.NS"};
+
+    private final byte[][] charts = new byte[SYMBOLS.length][];
+    private final byte[][] searches = new byte[SYMBOLS.length][];
+    private byte[] batch;
+    private int next;
+
+    @Override
+    public void setUp() throws IOException {
+        for (int i = 0; i < SYMBOLS.length; i++) {
+            charts[i] = payload("chart", SYMBOLS[i]);
+            searches[i] = payload("search", SYMBOLS[i]);
+        }
+
+        // Same shape as a /v7/finance/quote response, at the per-request symbol limit
+        StringBuilder json = new StringBuilder("{\"quoteResponse\":{\"result\":[");
+        for (int i = 0; i < StockPriceAPI.MAX_SYMBOLS_PER_REQUEST; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"language\":\"en-US\",\"quoteType\":\"EQUITY\",\"currency\":\"INR\"")
+                    .append(",\"regularMarketPrice\":").append(100 + i * 37.25)
+                    .append(",\"regularMarketPreviousClose\":").append(99 + i * 37.25)
+                    .append(",\"regularMarketTime\":1700000000")
+                    .append(",\"symbol\":\"SYM").append(i).append(".NS\"}");
+        }
+        json.append("],\"error\":null}}");
+        batch = json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] payload(String kind, String symbol) throws IOException {
+        String resource = "/payloads/" + kind + "/" + symbol + ".json";
+        try (InputStream in = QuoteParsingTarget.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IOException("Missing benchmark payload " + resource);
+            }
+            return in.readAllBytes();
+        }
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = next + 1 == SYMBOLS.length ? 0 : next + 1;
+        return index;
+    }
+
+    @Override
+    public Object parseChart() throws IOException {
+        int i = nextIndex();
+        return StockPriceAPI.parseQuote(SYMBOLS[i], new ByteArrayInputStream(charts[i]));
+    }
+
+    @Override
+    public Object parseBatch() throws IOException {
+        return StockPriceAPI.parseBatchPrices(new ByteArrayInputStream(batch));
+    }
+
+    @Override
+    public Object parseSearch() throws IOException {
+        int i = nextIndex();
+        return StockPriceAPI.parseStockName(new ByteArrayInputStream(searches[i]), SYMBOLS[i]);
+    }
+
+    // The parsers before JsonFieldExtractor: the body decoded into a String, then indexOf/substring
+    @Override
+    public Object chartBaseline() {
+        int i = nextIndex();
+        return indexOfPrice(new String(charts[i], StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public Object batchBaseline() {
+        return indexOfBatchPrices(new String(batch, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public Object searchBaseline() {
+        int i = nextIndex();
+        return indexOfName(new String(searches[i], StandardCharsets.UTF_8), SYMBOLS[i]);
+    }
+
+    private static double indexOfPrice(String json) {
+        String searchKey = "\"regularMarketPrice\":";
+        int priceIndex = json.indexOf(searchKey);
+        if (priceIndex != -1) {
+            int startIndex = priceIndex + searchKey.length();
+            int endIndex = json.indexOf(",", startIndex);
+            if (endIndex == -1) {
+                endIndex = json.indexOf("}", startIndex);
+            }
+            if (endIndex != -1) {
+                return Double.parseDouble(json.substring(startIndex, endIndex).trim());
+            }
+        }
+        return -1;
+    }
+
+    private static Map<String, Double> indexOfBatchPrices(String json) {
+        Map<String, Double> prices = new HashMap<>();
+        int resultIndex = json.indexOf("\"result\":[");
+        if (resultIndex == -1) return prices;
+
+        int depth = 0;
+        int objectStart = -1;
+        boolean inString = false;
+        for (int i = resultIndex + "\"result\":[".length(); i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (inString) {
+                if (c == '\\') {
+                    i++; // Skip escaped character
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{') {
+                if (depth == 0) objectStart = i;
+                depth++;
+            } else if (c == '}') {
+                depth--;
+                if (depth == 0 && objectStart != -1) {
+                    String entry = json.substring(objectStart, i + 1);
+                    String symbol = indexOfString(entry, "symbol");
+                    double price = indexOfNumber(entry, "regularMarketPrice");
+                    if (symbol != null && price > 0) {
+                        prices.put(symbol.toUpperCase(), price);
+                    }
+                    objectStart = -1;
+                }
+            } else if (c == ']' && depth == 0) {
+                break; // End of result array
+            }
+        }
+        return prices;
+    }
+
+    private static String indexOfString(String json, String key) {
+        String searchKey = "\"" + key + "\":\"";
+        int index = json.indexOf(searchKey);
+        if (index == -1) return null;
+        int start = index + searchKey.length();
+        int end = json.indexOf('"', start);
+        return end == -1 ? null : json.substring(start, end);
+    }
+
+    private static double indexOfNumber(String json, String key) {
+        String searchKey = "\"" + key + "\":";
+        int index = json.indexOf(searchKey);
+        if (index == -1) return -1;
+        int start = index + searchKey.length();
+        int end = start;
+        while (end < json.length() && ",}]".indexOf(json.charAt(end)) == -1) {
+            end++;
+        }
+        try {
+            return Double.parseDouble(json.substring(start, end).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String indexOfName(String json, String symbol) {
+        for (String searchKey : new String[] {"\"longname\":\"", "\"shortname\":\""}) {
+            int nameIndex = json.indexOf(searchKey);
+            if (nameIndex != -1) {
+                int startIndex = nameIndex + searchKey.length();
+                int endIndex = json.indexOf("\"", startIndex);
+                if (endIndex != -1) {
+                    return json.substring(startIndex, endIndex);
+                }
+            }
+        }
+        return symbol;
+    }
+}
@@ -0,0 +1,69 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * GamifiedPortfolio achievement checks, alone and as part of adding stocks
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AchievementsBenchmark {
+
+    /**
+     * Implemented by AchievementsTarget
+     */
+    public interface Target {
+        void setUp(int holdings);
+
+        // checkAchievements on a populated portfolio
+        int checkAchievements();
+
+        // A fresh portfolio filled through addStock, one call per stock
+        int addStockOneByOne();
+
+        // The same stocks through the addStocks batch path
+        int addStocksBatch();
+    }
+
+    @Param({"10", "1000", "100000"})
+    public int holdings;
+
+    private Target target;
+
+    @Setup
+    public void setUp() {
+        target = Targets.load("AchievementsTarget", Target.class);
+        target.setUp(holdings);
+    }
+
+    @Benchmark
+    public int checkAchievements() {
+        return target.checkAchievements();
+    }
+
+    @Benchmark
+    public int addStockOneByOne() {
+        return target.addStockOneByOne();
+    }
+
+    @Benchmark
+    public int addStocksBatch() {
+        return target.addStocksBatch();
+    }
+}
@@ -0,0 +1,50 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of benchmarks.jar. Takes the usual JMH command line, but
+ * unless -rf/-rff say otherwise the results are also written as JSON to
+ * jmh-result-&lt;version&gt;.json, so runs of different versions can be
+ * compared by a script.
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        if (cli.shouldHelp() || cli.shouldList() || cli.shouldListWithParams()
+                || cli.shouldListProfilers() || cli.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(cli);
+        if (!cli.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!cli.getResult().hasValue()) {
+            String extension = cli.getResultFormat().orElse(ResultFormatType.JSON).toString().toLowerCase();
+            options.result("jmh-result-" + version() + "." + extension);
+        }
+        new Runner(options.build()).run();
+    }
+
+    // Project version, filled in by the Maven build
+    private static String version() throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = BenchmarkMain.class.getResourceAsStream("/benchmarks.properties")) {
+            if (in != null) {
+                properties.load(in);
+            }
+        }
+        return properties.getProperty("version", "unknown");
+    }
+}
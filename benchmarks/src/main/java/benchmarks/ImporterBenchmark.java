@@ -0,0 +1,140 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * CSV import, from a file on disk to Stock objects. Besides files per
+ * second, each benchmark reports a "bytes" counter in bytes per second.
+ * splitBaseline is the readLine/split/replace parsing the importers used
+ * before CsvTokenizer; the per-line benchmarks isolate the tokenizer.
+ * importGenericParallel cuts the file into 256 KiB chunks, so it measures
+ * the chunked path at 100000 rows; at 1000 rows the file is too small to
+ * split and it matches importGeneric.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImporterBenchmark {
+
+    /**
+     * Implemented by ImporterTarget
+     */
+    public interface Target {
+        // Writes a generic and a Groww export of the given size
+        void setUp(int rows) throws IOException;
+
+        long genericBytes();
+
+        long growwBytes();
+
+        // Each returns the number of stocks imported
+        long splitBaseline() throws IOException;
+
+        long importGeneric() throws IOException;
+
+        long importGenericParallel() throws IOException;
+
+        long importGroww() throws IOException;
+
+        // One line mapped to a Stock through CsvTokenizer
+        Object tokenizeLine();
+
+        // The same line through split/trim/replace, the old way
+        Object splitLine();
+
+        void tearDown() throws IOException;
+    }
+
+    @State(Scope.Benchmark)
+    public static class Exports {
+        @Param({"1000", "100000"})
+        public int rows;
+
+        Target target;
+
+        @Setup
+        public void setUp() throws IOException {
+            target = Targets.load("ImporterTarget", Target.class);
+            target.setUp(rows);
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            target.tearDown();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Line {
+        Target target;
+
+        @Setup
+        public void setUp() {
+            target = Targets.load("ImporterTarget", Target.class);
+        }
+    }
+
+    // Bytes read, reported per second next to the files per second
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Bytes {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+
+    @Benchmark
+    public long splitBaseline(Exports exports, Bytes bytes) throws IOException {
+        bytes.bytes += exports.target.genericBytes();
+        return exports.target.splitBaseline();
+    }
+
+    @Benchmark
+    public long importGeneric(Exports exports, Bytes bytes) throws IOException {
+        bytes.bytes += exports.target.genericBytes();
+        return exports.target.importGeneric();
+    }
+
+    @Benchmark
+    public long importGenericParallel(Exports exports, Bytes bytes) throws IOException {
+        bytes.bytes += exports.target.genericBytes();
+        return exports.target.importGenericParallel();
+    }
+
+    @Benchmark
+    public long importGroww(Exports exports, Bytes bytes) throws IOException {
+        bytes.bytes += exports.target.growwBytes();
+        return exports.target.importGroww();
+    }
+
+    @Benchmark
+    public Object tokenizeLine(Line line) {
+        return line.target.tokenizeLine();
+    }
+
+    @Benchmark
+    public Object splitLine(Line line) {
+        return line.target.splitLine();
+    }
+}
@@ -0,0 +1,101 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * saveToFile/loadFromFile and the in-memory encoding behind them.
+ * Saves include the fsync, so they measure the disk as much as the code.
+ * serializationSave/serializationLoad are the ObjectOutputStream format
+ * portfolio.dat used before; the file size of both formats is printed at
+ * setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersistenceBenchmark {
+
+    /**
+     * Implemented by PersistenceTarget
+     */
+    public interface Target {
+        void setUp(int holdings) throws IOException;
+
+        // Size of the file written at setup, in each format
+        long fileBytes() throws IOException;
+
+        long serializedBytes() throws IOException;
+
+        void save() throws IOException;
+
+        Object load() throws IOException;
+
+        // PortfolioFile.encode, the part of a save done on the caller's thread
+        Object encode();
+
+        void serializationSave() throws IOException;
+
+        Object serializationLoad() throws IOException;
+
+        void tearDown() throws IOException;
+    }
+
+    @Param({"10", "1000", "100000"})
+    public int holdings;
+
+    private Target target;
+
+    @Setup
+    public void setUp() throws IOException {
+        target = Targets.load("PersistenceTarget", Target.class);
+        target.setUp(holdings);
+        System.out.printf("%n%d holdings: PortfolioFile %d bytes, ObjectOutputStream %d bytes%n",
+                holdings, target.fileBytes(), target.serializedBytes());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        target.tearDown();
+    }
+
+    @Benchmark
+    public void save() throws IOException {
+        target.save();
+    }
+
+    @Benchmark
+    public Object load() throws IOException {
+        return target.load();
+    }
+
+    @Benchmark
+    public Object encode() {
+        return target.encode();
+    }
+
+    @Benchmark
+    public void serializationSave() throws IOException {
+        target.serializationSave();
+    }
+
+    @Benchmark
+    public Object serializationLoad() throws IOException {
+        return target.serializationLoad();
+    }
+}
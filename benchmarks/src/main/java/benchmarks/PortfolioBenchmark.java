@@ -0,0 +1,92 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Portfolio aggregates, lookups and sorts
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PortfolioBenchmark {
+
+    /**
+     * Implemented by PortfolioTarget
+     */
+    public interface Target {
+        void setUp(int holdings);
+
+        // Total value, profit and profit percentage, as the stats panels read them
+        double totals();
+
+        // Full pass over every position, which the totals used to take
+        boolean recomputeTotals();
+
+        // Sum of current values through getStocks()
+        double scanStocks();
+
+        // findStock for each symbol in turn
+        Object findStock();
+
+        // Two sorts per call, so neither starts from its own order
+        void sortByNameThenValue();
+
+        void sortByNameThenProfit();
+    }
+
+    @Param({"10", "1000", "100000"})
+    public int holdings;
+
+    private Target target;
+
+    @Setup
+    public void setUp() {
+        target = Targets.load("PortfolioTarget", Target.class);
+        target.setUp(holdings);
+    }
+
+    @Benchmark
+    public double totals() {
+        return target.totals();
+    }
+
+    @Benchmark
+    public boolean recomputeTotals() {
+        return target.recomputeTotals();
+    }
+
+    @Benchmark
+    public double scanStocks() {
+        return target.scanStocks();
+    }
+
+    @Benchmark
+    public Object findStock() {
+        return target.findStock();
+    }
+
+    @Benchmark
+    public void sortByNameThenValue() {
+        target.sortByNameThenValue();
+    }
+
+    @Benchmark
+    public void sortByNameThenProfit() {
+        target.sortByNameThenProfit();
+    }
+}
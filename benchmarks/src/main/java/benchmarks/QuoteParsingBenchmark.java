@@ -0,0 +1,90 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * StockPriceAPI response parsing on the recorded payloads (no network).
+ * The *Baseline benchmarks parse the same payloads the way StockPriceAPI
+ * did before JsonFieldExtractor: the whole body as a String, then indexOf.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuoteParsingBenchmark {
+
+    /**
+     * Implemented by QuoteParsingTarget
+     */
+    public interface Target {
+        void setUp() throws IOException;
+
+        // One chart response into a Quote
+        Object parseChart() throws IOException;
+
+        // A batch quote response for 50 symbols into a price map
+        Object parseBatch() throws IOException;
+
+        // One search response into a company name
+        Object parseSearch() throws IOException;
+
+        // The same three, with the String/indexOf parsing
+        Object chartBaseline();
+
+        Object batchBaseline();
+
+        Object searchBaseline();
+    }
+
+    private Target target;
+
+    @Setup
+    public void setUp() throws IOException {
+        target = Targets.load("QuoteParsingTarget", Target.class);
+        target.setUp();
+    }
+
+    @Benchmark
+    public Object parseChart() throws IOException {
+        return target.parseChart();
+    }
+
+    @Benchmark
+    public Object parseBatch() throws IOException {
+        return target.parseBatch();
+    }
+
+    @Benchmark
+    public Object parseSearch() throws IOException {
+        return target.parseSearch();
+    }
+
+    @Benchmark
+    public Object chartBaseline() {
+        return target.chartBaseline();
+    }
+
+    @Benchmark
+    public Object batchBaseline() {
+        return target.batchBaseline();
+    }
+
+    @Benchmark
+    public Object searchBaseline() {
+        return target.searchBaseline();
+    }
+}
@@ -0,0 +1,22 @@
+package benchmarks;
+
+/**
+ * The application classes live in the default package, which JMH
+ * benchmarks (and any other named package) cannot refer to. Each benchmark
+ * therefore declares a Target interface that a default-package class
+ * implements; it is looked up by name once, in the benchmark's setup, and
+ * called through the interface from then on.
+ */
+final class Targets {
+
+    private Targets() {
+    }
+
+    static <T> T load(String className, Class<T> type) {
+        try {
+            return type.cast(Class.forName(className).getDeclaredConstructor().newInstance());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create benchmark target " + className, e);
+        }
+    }
+}